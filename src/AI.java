@@ -1,24 +1,348 @@
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** An instance represents a Solver that intelligently determines 
  *  Moves using algorithm Minimax. */
-public class AI implements Solver {
+public class AI implements Solver, Ponderer, Budgeted {
+
+    /** The algorithms an AI can use to search the game space. Without a
+     *  transposition table, all of them give the same preferred Moves for
+     *  the same player, depth and Board. */
+    public enum Search {
+        /** Build the whole game tree to the search depth, then run minimax on it. */
+        MINIMAX,
+        /** Minimax with alpha-beta pruning. Children are created only when
+         *  they are searched, so subtrees that cannot change the result are
+         *  never built. */
+        ALPHA_BETA,
+        /** Minimax with alpha-beta pruning, run depth-first on a single Board
+         *  by doing and undoing moves. No State is created, so memory use
+         *  grows only with the search depth. This is the only algorithm that
+         *  uses a transposition table (see setTranspositionTable). */
+        DEPTH_FIRST
+    }
+
+    /** The ways the DEPTH_FIRST search can use several threads. */
+    public enum Parallelism {
+        /** Search each move of the root in its own task. */
+        ROOT_SPLIT,
+        /** Lazy SMP: while the calling thread searches as usual, helper
+         *  threads search the same position at different depths and in
+         *  different move orders. All threads share the transposition
+         *  table, and the helpers help only by filling it. */
+        LAZY_SMP
+    }
+
+    /** The ways an AI can evaluate a Board without a winner at the end of
+     *  its search. */
+    public enum Evaluation {
+        /** The piece balance over all win locations (see Board.windowBalance). */
+        WINDOWS,
+        /** The piece balance plus a bonus for each threat: an empty tile
+         *  that would complete four in a row, whether or not a piece can be
+         *  played there yet. Because the players must eventually fill the
+         *  columns in turn, the first player tends to get the tiles of odd
+         *  rows (counted from the bottom) and the second player those of even
+         *  rows, so a threat on a player's own rows is worth more (see
+         *  EvalWeights.Term.GOOD_THREAT and OTHER_THREAT). */
+        THREATS
+    }
+
+    /** The columns in increasing order. */
+    private static final int[] columns= new int[Board.NUM_COLS];
+    static {
+        for (int c= 0; c < Board.NUM_COLS; c++)
+            columns[c]= c;
+    }
+
+    /** The size in MB of the transposition table created for LAZY_SMP when
+     *  none has been set. */
+    public static final int DEFAULT_TABLE_MB= 64;
 
     private Board.Player player; // the current player
 
     /** The depth of the search in the game space when evaluating moves. */
     private int depth;
 
+    /** The algorithm used to search the game space. */
+    private Search search;
+
+    /** How Boards without a winner are evaluated. */
+    private Evaluation evaluation= Evaluation.WINDOWS;
+
+    /** The weights of the terms of the evaluation. */
+    private EvalWeights weights;
+
+    /** The player who moved first in the game of the last call of getMoves
+     *  (null before the first call). */
+    private Board.Player first;
+
+    /** Results of earlier searches, reused across calls of getMoves
+     *  (null if there is none). */
+    private TranspositionTable table;
+
+    /** The time budget of one getMoves call in milliseconds (0 if there is
+     *  no budget and the search goes to depth instead). */
+    private long timeLimit;
+
+    /** The System.nanoTime() at which the current search must stop (0 if
+     *  it need not stop). */
+    private long deadline;
+
+    /** The node budget of one getMoves call (0 if there is none). */
+    private long nodeLimit;
+
+    /** The number of positions after which the current search must stop
+     *  (0 if it need not stop). */
+    private long nodeBudget;
+
+    /** The cap set by setBudget on the time in ms and on the positions of a
+     *  getMoves call (0 if none). */
+    private long budgetMs;
+    private long budgetNodes;
+
+    /** The number of positions searched by the last call of getMoves with
+     *  the DEPTH_FIRST search or a time or node budget. */
+    private long nodes;
+
+    /** The threads that help the calling thread search (null if the search
+     *  runs on the calling thread only). */
+    private ForkJoinPool pool;
+
+    /** How the threads of pool are used. */
+    private Parallelism parallelism= Parallelism.ROOT_SPLIT;
+
+    /** The book consulted before searching (null if there is none). */
+    private Book book;
+
+    /** True iff the DEPTH_FIRST search orders moves with a MoveOrdering;
+     *  otherwise it tries columns in increasing order. */
+    private boolean ordering= true;
+
+    /** The thread that ponders (null if this AI is not pondering). */
+    private Thread ponderThread;
+
+    /** The searcher of ponderThread (null if this AI is not pondering). */
+    private Searcher ponderSearcher;
+
+    /** Thrown inside the search when the deadline has passed or the node
+     *  budget is spent. It has no stack trace, since it is only used to
+     *  unwind the search. */
+    private static class Timeout extends RuntimeException {
+        Timeout() {
+            super("Search timed out", null, false, false);
+        }
+    }
+
+    /** The only Timeout; throwing it allocates nothing. */
+    private static final Timeout timeout= new Timeout();
+
     /** Constructor: an instance with player p who searches to depth d
      * when searching the game space for moves. */
     public AI(Board.Player p, int d) {
+        this(p, d, Search.MINIMAX);
+    }
+
+    /** Constructor: an instance with player p who searches to depth d
+     * with algorithm s when searching the game space for moves. */
+    public AI(Board.Player p, int d, Search s) {
+        this(p, d, s, EvalWeights.DEFAULT);
+    }
+
+    /** Constructor: an instance with player p who searches to depth d
+     * with algorithm s and evaluates Boards with weights w. */
+    public AI(Board.Player p, int d, Search s, EvalWeights w) {
         player= p;
         depth= d;
+        search= s;
+        weights= w;
     }
 
-    /** See Solver.getMoves for the specification. */
+    /** Constructor: an instance with player p who searches to depth d
+     * with algorithm s and evaluates Boards with the weights in file f (see
+     * EvalWeights.load).
+     * Throw an IOException if f cannot be read. */
+    public AI(Board.Player p, int d, Search s, File f) throws IOException {
+        this(p, d, s, EvalWeights.load(f));
+    }
+
+    /** Make the DEPTH_FIRST search store its results in t and reuse results
+     *  found there (no table if t is null). Because results of an earlier,
+     *  deeper search can be reused, the preferred Moves may then differ from
+     *  those of minimax at this AI's depth. */
+    public void setTranspositionTable(TranspositionTable t) {
+        table= t;
+    }
+
+    /** Give each getMoves call a budget of ms milliseconds (no budget if ms
+     *  is 0). With a budget, getMoves uses the DEPTH_FIRST search at depth
+     *  1, 2, 3, ... until the budget runs out and returns the preferred Moves
+     *  of the deepest search that finished. Depth 1 always finishes, so the
+     *  budget can be overrun by that much. The depth given to the
+     *  constructor is then ignored.
+     *  Precondition: ms >= 0. */
+    public void setTimeLimit(long ms) {
+        timeLimit= ms;
+    }
+
+    /** Give each getMoves call a budget of n positions (no budget if n is
+     *  0). As with a time budget (see setTimeLimit), getMoves then deepens
+     *  until the budget runs out, and depth 1 always finishes. The budget is
+     *  checked every 1024 positions; when several threads search, each
+     *  checks its own count against what is left of the budget, so it can
+     *  be overrun by up to a factor of the number of threads. Both budgets
+     *  can be given; the search stops at the first one that runs out.
+     *  Precondition: n >= 0. */
+    public void setNodeLimit(long n) {
+        nodeLimit= n;
+    }
+
+    /** See Budgeted.setBudget for the specification. An AI without a time
+     *  or node budget of its own then searches to depth 1 and then to its
+     *  depth with the DEPTH_FIRST search, and returns the Moves of depth 1
+     *  if the cap cuts the second search short. An AI with a budget of its
+     *  own deepens as usual (see setTimeLimit), within the smaller of its
+     *  budget and the cap. */
+    public @Override void setBudget(long ms, long n) {
+        budgetMs= ms;
+        budgetNodes= n;
+    }
+
+    /** Make the DEPTH_FIRST search spread the moves of the root over n
+     *  threads of a ForkJoinPool (search on the calling thread only if n is
+     *  1). Without a transposition table, the preferred Moves are the same
+     *  as those of the sequential search.
+     *  Precondition: n >= 1. */
+    public void setParallelism(int n) {
+        setParallelism(n, Parallelism.ROOT_SPLIT);
+    }
+
+    /** Make the DEPTH_FIRST search use n threads in all, in the way given by
+     *  kind (search on the calling thread only if n is 1). LAZY_SMP needs a
+     *  transposition table; if this AI has none, one of DEFAULT_TABLE_MB MB
+     *  is created.
+     *  Precondition: n >= 1. */
+    public void setParallelism(int n, Parallelism kind) {
+        if (pool != null) pool.shutdown();
+        parallelism= kind;
+        pool= null;
+        if (n > 1 && kind == Parallelism.ROOT_SPLIT) {
+            pool= new ForkJoinPool(n);
+        } else if (n > 1) {
+            // The calling thread is one of the n threads
+            pool= new ForkJoinPool(n - 1);
+            if (table == null)
+                table= new TranspositionTable(DEFAULT_TABLE_MB, TranspositionTable.Replacement.ALWAYS);
+        }
+    }
+
+    /** Make the DEPTH_FIRST search try moves center-out, with killer moves
+     *  and history scores first (see MoveOrdering), if on is true; otherwise
+     *  it tries columns in increasing order. Ordering is on by default. It
+     *  changes only how much is pruned, not the preferred Moves. */
+    public void setMoveOrdering(boolean on) {
+        ordering= on;
+    }
+
+    /** Make getMoves look up the Board in book before searching (no book if
+     *  book is null). If the Board is in the book, its column is the only
+     *  preferred Move and nothing is searched. */
+    public void setOpeningBook(Book book) {
+        this.book= book;
+    }
+
+    /** Make this AI evaluate Boards without a winner with e. The default is
+     *  WINDOWS. */
+    public void setEvaluation(Evaluation e) {
+        evaluation= e;
+    }
+
+    /** Return the number of positions searched by the last call of getMoves
+     *  (0 if it took its Move from the book). */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /** See Ponderer.startPondering for the specification. For depth 1, 2,
+     *  3, ... in turn, the background thread searches the Board after each
+     *  reply of the opponent to that depth, exactly as getMoves would with
+     *  the DEPTH_FIRST search. It only fills the transposition table, which
+     *  the next getMoves call then reuses (a table of DEFAULT_TABLE_MB MB is created if this AI has
+     *  none). Because of that reuse, the preferred Moves may then differ
+     *  from those of minimax at this AI's depth. An AI that neither uses the
+     *  DEPTH_FIRST search nor has a time or node budget does not ponder,
+     *  since it would not use the table. */
+    public @Override void startPondering(Board b) {
+        stopPondering();
+        if (search != Search.DEPTH_FIRST && timeLimit == 0 && nodeLimit == 0) return;
+        if (b.hasConnectFour() != null || b.isFull()) return;
+        if (table == null)
+            table= new TranspositionTable(DEFAULT_TABLE_MB, TranspositionTable.Replacement.ALWAYS);
+
+        Board board= new Board(b);
+        Searcher searcher= new Searcher(table, 0);
+        ponderSearcher= searcher;
+        ponderThread= new Thread(() -> {
+            int[] values= new int[Board.NUM_COLS];
+            try {
+                for (int d= 1; d < board.getNumEmpty(); d++) {
+                    for (int c : searcher.base) {
+                        if (!board.canPlay(c)) continue;
+                        board.makeMove(player.opponent(), c);
+                        if (board.hasConnectFour() == null && !board.isFull())
+                            searcher.searchRoot(board, d, values);
+                        board.undoMove(c);
+                    }
+                }
+            } catch (Timeout e) {
+                // Stopped by stopPondering
+            }
+        }, "AI " + player + " pondering");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+    }
+
+    /** See Ponderer.stopPondering for the specification. */
+    public @Override void stopPondering() {
+        if (ponderThread == null) return;
+        ponderSearcher.stopped= true;
+        boolean interrupted= false;
+        while (ponderThread.isAlive()) {
+            try {
+                ponderThread.join();
+            } catch (InterruptedException e) {
+                interrupted= true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        ponderThread= null;
+        ponderSearcher= null;
+    }
+
+    /** See Solver.getMoves for the specification. Pondering, if any, is
+     *  stopped first. */
     public @Override Move[] getMoves(Board b) {
     	assert b != null;
+    	stopPondering();
+    	nodes= 0;
+    	// The player to move moved first iff both have the same number of pieces
+    	int redPieces= Long.bitCount(b.getPieces(Board.Player.RED));
+    	int yellowPieces= Long.bitCount(b.getPieces(Board.Player.YELLOW));
+    	first= redPieces == yellowPieces ? player : player.opponent();
+    	if (book != null) {
+    	    int c= book.bestColumn(b, player);
+    	    if (c >= 0 && b.canPlay(c))
+    	        return new Move[]{ new Move(player, c) };
+    	}
+    	if (timeLimit > 0 || nodeLimit > 0 || budgetMs > 0 || budgetNodes > 0)
+    	    return getMovesIterative(b);
+    	if (search == Search.ALPHA_BETA) return getMovesAlphaBeta(b);
+    	if (search == Search.DEPTH_FIRST) return getMovesDepthFirst(b, depth);
     	
         // Set up current state
     	State currentState= new State(player, b, null);
@@ -38,6 +362,379 @@ public class AI implements Solver {
     	return preferredMoves.toArray(Move.length0);
     }
 
+    /** Return the preferred Moves on Board b, found with alpha-beta pruning.
+     *  Every child of the root is searched with a window just below the best
+     *  value found so far, so each child that ties with the best gets its
+     *  exact value and the result equals that of minimax. */
+    private Move[] getMovesAlphaBeta(Board b) {
+        State currentState= new State(player, b, null);
+        currentState.initializeChildren();
+
+        int best= Integer.MIN_VALUE;
+        for (State childState : currentState.getChildren()) {
+            int alpha= best == Integer.MIN_VALUE ? best : best - 1;
+            childState.setValue(alphaBeta(childState, depth - 1, alpha, Integer.MAX_VALUE));
+            if (childState.getValue() > best)
+                best= childState.getValue();
+        }
+        currentState.setValue(best);
+
+        List<Move> preferredMoves= new ArrayList<Move>();
+        for (State childState : currentState.getChildren())
+            if (childState.getValue() == best)
+                preferredMoves.add(childState.getLastMove());
+        return preferredMoves.toArray(Move.length0);
+    }
+
+    /** Return the minimax value of State s searched d more moves deep, given
+     *  that only values in alpha..beta can affect the result. If the value is
+     *  at most alpha (at least beta) the result is also at most alpha (at
+     *  least beta), but it need not be exact. Children of s are created as
+     *  they are needed and are not searched after a cutoff. */
+    private int alphaBeta(State s, int d, int alpha, int beta) {
+        nodes++;
+        if (d <= 0)
+            return evaluateBoard(s.getBoard());
+        s.initializeChildren();
+        if (s.getChildren() == State.length0)
+            return evaluateBoard(s.getBoard());
+
+        boolean maximizing= s.getPlayer() == player;
+        int value= maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (State childState : centerOut(s.getChildren())) {
+            int childValue= alphaBeta(childState, d - 1, alpha, beta);
+            childState.setValue(childValue);
+            if (maximizing) {
+                value= Math.max(value, childValue);
+                alpha= Math.max(alpha, value);
+            } else {
+                value= Math.min(value, childValue);
+                beta= Math.min(beta, value);
+            }
+            if (alpha >= beta) break;
+        }
+        return value;
+    }
+
+    /** Return a copy of children sorted by the distance of their last Move
+     *  from the center column, so that the likely best moves come first. */
+    private static State[] centerOut(State[] children) {
+        State[] sorted= children.clone();
+        Arrays.sort(sorted, new Comparator<State>() {
+            public @Override int compare(State s1, State s2) {
+                return MoveOrdering.centerDistance(s1.getLastMove().getColumn())
+                        - MoveOrdering.centerDistance(s2.getLastMove().getColumn());
+            }
+        });
+        return sorted;
+    }
+
+    /** Return the preferred Moves on Board b found by iterative deepening
+     *  within the time and node budgets and the cap (see setTimeLimit,
+     *  setNodeLimit and setBudget). */
+    private Move[] getMovesIterative(Board b) {
+        Move[] preferredMoves= getMovesDepthFirst(b, 1);
+        // Searching deeper than the number of empty tiles changes nothing.
+        // Without a budget of its own, this AI searches straight to its
+        // depth, which only the cap can cut short: the depths in between
+        // would cost more than they save, since there may be no table.
+        boolean own= timeLimit > 0 || nodeLimit > 0;
+        int maxDepth= own ? b.getNumEmpty() : Math.min(depth, b.getNumEmpty());
+        long ms= smallerLimit(timeLimit, budgetMs);
+        deadline= ms > 0 ? System.nanoTime() + ms * 1000000 : 0;
+        nodeBudget= smallerLimit(nodeLimit, budgetNodes);
+        try {
+            for (int d= own ? 2 : Math.max(2, maxDepth); d <= maxDepth
+                    && (deadline == 0 || System.nanoTime() - deadline < 0)
+                    && (nodeBudget == 0 || nodes < nodeBudget); d++) {
+                preferredMoves= getMovesDepthFirst(b, d);
+            }
+        } catch (Timeout e) {
+            // The deepest search did not finish; keep the one before it. The
+            // table keeps the entries that the unfinished search stored: each
+            // is the result of a subtree that was searched to the end, so it
+            // is as valid as any other, and it speeds up the next search.
+        } finally {
+            deadline= 0;
+            nodeBudget= 0;
+        }
+        return preferredMoves;
+    }
+
+    /** Return the smaller of limits a and b, where 0 means no limit. */
+    private static long smallerLimit(long a, long b) {
+        return a == 0 || b != 0 && b < a ? b : a;
+    }
+
+    /** Return the preferred Moves on Board b, found by a depth-first
+     *  alpha-beta search of depth d on a copy of b. As in getMovesAlphaBeta,
+     *  each move of the root is searched with a window just below the best
+     *  value so far, so the result equals that of minimax. If this AI has a
+     *  pool, the search is run in parallel as given by parallelism. */
+    private Move[] getMovesDepthFirst(Board b, int d) {
+        if (b.hasConnectFour() != null) return Move.length0;
+        if (pool != null && parallelism == Parallelism.ROOT_SPLIT)
+            return pool.invoke(new RootSplit(b, d));
+
+        List<Helper> helpers= new ArrayList<Helper>();
+        if (pool != null) {
+            for (int i= 1; i <= pool.getParallelism(); i++)
+                helpers.add(new Helper(b, d, i));
+            for (Helper helper : helpers)
+                pool.execute(helper);
+        }
+
+        Board board= new Board(b);
+        Searcher searcher= new Searcher(table, 0);
+        int[] values= new int[Board.NUM_COLS];
+        int best= Integer.MIN_VALUE;
+        try {
+            best= searcher.searchRoot(board, d, values);
+        } finally {
+            nodes += searcher.nodes;
+            for (Helper helper : helpers)
+                helper.searcher.stopped= true;
+            for (Helper helper : helpers) {
+                helper.join();
+                nodes += helper.searcher.nodes;
+            }
+        }
+        return preferredMoves(b, values, best);
+    }
+
+    /** Return the Moves of this AI's player into the columns c that can be
+     *  played on Board b and have values[c] == best, in increasing column order. */
+    private Move[] preferredMoves(Board b, int[] values, int best) {
+        List<Move> preferredMoves= new ArrayList<Move>();
+        for (int c= 0; c < Board.NUM_COLS; c++)
+            if (b.canPlay(c) && values[c] == best)
+                preferredMoves.add(new Move(player, c));
+        return preferredMoves.toArray(Move.length0);
+    }
+
+    /** A task that searches all moves of the root in parallel, one RootTask
+     *  per move, and returns the preferred Moves. */
+    private class RootSplit extends RecursiveTask<Move[]> {
+        private Board board; // the root position
+        private int d;       // the depth to search to
+
+        /** Constructor: a task searching Board b to depth d. */
+        RootSplit(Board b, int d) {
+            board= b;
+            this.d= d;
+        }
+
+        /** Search all moves of the root and return the preferred Moves. If
+         *  one task is stopped, stop the others too and wait until all have
+         *  ended before throwing, so that none still searches (and writes
+         *  to the table) after the deadline and node budget are reset. */
+        protected @Override Move[] compute() {
+            AtomicInteger best= new AtomicInteger(Integer.MIN_VALUE);
+            List<RootTask> tasks= new ArrayList<RootTask>();
+            for (int c : ordering ? MoveOrdering.CENTER_OUT : columns)
+                if (board.canPlay(c))
+                    tasks.add(new RootTask(board, c, d, best));
+            // Not invokeAll: it cancels the other tasks when one throws, and
+            // a cancelled task that is running can no longer be joined
+            for (RootTask task : tasks)
+                task.fork();
+            RuntimeException stop= null;
+            for (RootTask task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    if (stop == null) {
+                        stop= e;
+                        for (RootTask t : tasks)
+                            t.searcher.stopped= true;
+                    }
+                }
+            }
+            for (RootTask task : tasks)
+                nodes += task.searcher.nodes;
+            if (stop != null) throw stop;
+
+            int[] values= new int[Board.NUM_COLS];
+            for (RootTask task : tasks)
+                values[task.column]= task.join();
+            return preferredMoves(board, values, best.get());
+        }
+    }
+
+    /** A Lazy SMP helper. It searches the root to ever greater depths,
+     *  starting at the depth of the calling thread or one more, with its own
+     *  move order, until it is stopped. It only fills the shared
+     *  transposition table; its values are not used directly. */
+    private class Helper extends RecursiveAction {
+        private Board board;       // the root position
+        private int d;             // the first depth to search the root to
+        private Searcher searcher; // the searcher of this helper
+
+        /** Constructor: the i-th helper (i > 0) for searching Board b to depth d. */
+        Helper(Board b, int d, int i) {
+            board= new Board(b);
+            this.d= d + i % 2;
+            searcher= new Searcher(table, i);
+        }
+
+        /** Search until stopped, the deadline passes or the depth covers
+         *  every empty tile. */
+        protected @Override void compute() {
+            try {
+                for (int dd= d; dd <= board.getNumEmpty(); dd++)
+                    searcher.alphaBeta(board, player, dd, 0, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            } catch (Timeout e) {
+                // Stopped by the calling thread or by the deadline
+            }
+        }
+    }
+
+    /** A task that searches one move of the root. All RootTasks of a root
+     *  share the best value found so far, so that each can search with a
+     *  window just below it, as getMovesDepthFirst does. */
+    private class RootTask extends RecursiveTask<Integer> {
+        private Board board;         // the root position
+        private int column;          // the column this task plays
+        private int d;               // the depth to search the root to
+        private AtomicInteger best;  // the best value of the root so far
+        private Searcher searcher= new Searcher(table, 0);
+
+        /** Constructor: a task searching the move into column c on Board b
+         *  to depth d, sharing best with the other moves of the root. */
+        RootTask(Board b, int c, int d, AtomicInteger best) {
+            board= b;
+            column= c;
+            this.d= d;
+            this.best= best;
+        }
+
+        /** Return the value of this task's move, exact if it is not below
+         *  the best value of the root. */
+        protected @Override Integer compute() {
+            if (searcher.stopped) throw timeout;
+            Board child= new Board(board);
+            child.makeMove(player, column);
+            int bestSoFar= best.get();
+            int alpha= bestSoFar == Integer.MIN_VALUE ? bestSoFar : bestSoFar - 1;
+            int value= searcher.alphaBeta(child, player.opponent(), d - 1, 1, alpha, Integer.MAX_VALUE);
+            best.accumulateAndGet(value, Math::max);
+            return value;
+        }
+    }
+
+    /** An instance searches positions depth-first for this AI on a single
+     *  Board. Threads that search at the same time need their own Searcher. */
+    private class Searcher {
+        /** The transposition table used by this Searcher (null if none). */
+        private TranspositionTable table;
+
+        /** The columns in the order in which their moves are searched when
+         *  there are no killer moves or history scores. */
+        private int[] base= new int[Board.NUM_COLS];
+
+        /** The killer moves and history scores of this Searcher (null if
+         *  moves are always searched in the order of base). */
+        private MoveOrdering moveOrdering;
+
+        /** The number of positions searched by this Searcher. */
+        private long nodes;
+
+        /** Set to true by another thread to stop this Searcher. */
+        private volatile boolean stopped;
+
+        /** Constructor: a Searcher using transposition table t (none if null)
+         *  whose base order starts rotation places into the center-out order
+         *  if this AI orders moves, and into the increasing order if not. */
+        Searcher(TranspositionTable t, int rotation) {
+            table= t;
+            int[] order= ordering ? MoveOrdering.CENTER_OUT : columns;
+            for (int i= 0; i < Board.NUM_COLS; i++)
+                base[i]= order[(i + rotation) % Board.NUM_COLS];
+            if (ordering)
+                moveOrdering= new MoveOrdering(Board.NUM_ROWS * Board.NUM_COLS);
+        }
+
+        /** Search every move of this AI's player on Board b to depth d, each
+         *  with a window just below the best value so far (see
+         *  getMovesDepthFirst), set values[c] to the value of the move into
+         *  column c, and return the best value. Moves are made on b and undone
+         *  again, so b is unchanged when this method returns. */
+        int searchRoot(Board b, int d, int[] values) {
+            int best= Integer.MIN_VALUE;
+            for (int c : base) {
+                if (!b.canPlay(c)) continue;
+                int alpha= best == Integer.MIN_VALUE ? best : best - 1;
+                b.makeMove(player, c);
+                values[c]= alphaBeta(b, player.opponent(), d - 1, 1, alpha, Integer.MAX_VALUE);
+                b.undoMove(c);
+                if (values[c] > best)
+                    best= values[c];
+            }
+            return best;
+        }
+
+        /** Return the minimax value of Board b, with Player p to play, searched
+         *  d more moves deep, given that only values in alpha..beta can affect
+         *  the result (see alphaBeta(State, int, int, int)). b is ply moves
+         *  below the root of the search. Moves are made on b and undone again,
+         *  so b is unchanged when this method returns. */
+        int alphaBeta(Board b, Board.Player p, int d, int ply, int alpha, int beta) {
+            nodes++;
+            if ((nodes & 1023) == 0 && (stopped || deadline != 0 && System.nanoTime() - deadline > 0
+                    || nodeBudget != 0 && AI.this.nodes + nodes > nodeBudget))
+                throw timeout;
+            if (d <= 0 || b.hasConnectFour() != null || b.isFull())
+                return evaluateBoard(b);
+
+            // Use a stored result if it was searched at least as deep
+            long hash= 0;
+            int alpha0= alpha;
+            int beta0= beta;
+            if (table != null) {
+                hash= b.getHash(p);
+                long entry= table.probe(hash);
+                if (entry != TranspositionTable.MISS && TranspositionTable.depth(entry) >= d) {
+                    int v= TranspositionTable.value(entry);
+                    switch (TranspositionTable.bound(entry)) {
+                        case EXACT: return v;
+                        case LOWER: alpha= Math.max(alpha, v); break;
+                        case UPPER: beta= Math.min(beta, v); break;
+                    }
+                    if (alpha >= beta) return v;
+                }
+            }
+
+            boolean maximizing= p == player;
+            int value= maximizing ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            int[] order= moveOrdering == null ? base : moveOrdering.order(ply, p, base);
+            for (int c : order) {
+                if (!b.canPlay(c)) continue;
+                b.makeMove(p, c);
+                int childValue= alphaBeta(b, p.opponent(), d - 1, ply + 1, alpha, beta);
+                b.undoMove(c);
+                if (maximizing) {
+                    value= Math.max(value, childValue);
+                    alpha= Math.max(alpha, value);
+                } else {
+                    value= Math.min(value, childValue);
+                    beta= Math.min(beta, value);
+                }
+                if (alpha >= beta) {
+                    if (moveOrdering != null) moveOrdering.cutoff(ply, p, c, d);
+                    break;
+                }
+            }
+
+            if (table != null) {
+                TranspositionTable.Bound bound= value <= alpha0 ? TranspositionTable.Bound.UPPER
+                        : value >= beta0 ? TranspositionTable.Bound.LOWER
+                        : TranspositionTable.Bound.EXACT;
+                table.store(hash, value, d, bound);
+            }
+            return value;
+        }
+    }
+
     /** Generate the game tree with root s of depth d.
      * The game tree's nodes are State objects that represent the state of a game
      * and whose children are all possible States that can result from the next move.
@@ -67,6 +764,7 @@ public class AI implements Solver {
      * Use the Minimax algorithm to assign a numerical value to each State of the
      * tree rooted at s, indicating how desirable that State is to this player. */
     public void minimax(State s) {
+    	nodes++;
     	// If s is a leaf node of the game tree, call the evaluateBoard() function.
     	if (s.getChildren() == State.length0)
     		s.setValue(evaluateBoard(s.getBoard()));
@@ -97,26 +795,38 @@ public class AI implements Solver {
      * looking several moves into the future. */
     public int evaluateBoard(Board b) {
         Board.Player winner= b.hasConnectFour();
-        if (winner == null) {
-            // Store in sum the value of board b. 
-            int sum= 0;
-            List<Board.Player[]> locs= b.winLocations();
-            for (Board.Player[] loc : locs) {
-                for (Board.Player p : loc) {
-                    sum= sum + (p == player ? 1 : p != null ? -1 : 0);
-                }
-            }
-            return sum;
+        int numEmpty= b.getNumEmpty();
+        if (winner != null) {
+            return (winner == player ? 1 : -1) * weights.getWin() * numEmpty;
         }
-        // There is a winner
-        int numEmpty= 0;
-        for (int r= 0; r < Board.NUM_ROWS; r= r+1) {
-            for (int c= 0; c < Board.NUM_COLS; c= c+1) {
-                if (b.getTile(r, c) == null) numEmpty += 1;
-            }
+        // The value of board b is the weighted sum of its terms
+        Board.Player opponent= player.opponent();
+        int value= weights.get(EvalWeights.Term.PIECE, numEmpty) * b.windowBalance(player);
+        if (!weights.isZero(EvalWeights.Term.WINDOW2)) {
+            value += weights.get(EvalWeights.Term.WINDOW2, numEmpty)
+                    * (b.countOpenWindows(player, 2) - b.countOpenWindows(opponent, 2));
         }
-        return (winner == player ? 1 : -1) * 10000 * numEmpty;
+        if (!weights.isZero(EvalWeights.Term.WINDOW3)) {
+            value += weights.get(EvalWeights.Term.WINDOW3, numEmpty)
+                    * (b.countOpenWindows(player, 3) - b.countOpenWindows(opponent, 3));
+        }
+        if (!weights.isZero(EvalWeights.Term.CENTER)) {
+            int center= Board.NUM_COLS / 2;
+            value += weights.get(EvalWeights.Term.CENTER, numEmpty)
+                    * (b.countPieces(player, center) - b.countPieces(opponent, center));
+        }
+        if (evaluation == Evaluation.THREATS) {
+            value += threatBonus(b, player, numEmpty) - threatBonus(b, opponent, numEmpty);
+        }
+        return value;
+    }
 
+    /** Return the THREATS bonus of Player p on Board b, which has numEmpty
+     *  empty tiles. The first player's own rows are the odd ones. */
+    private int threatBonus(Board b, Board.Player p, int numEmpty) {
+        boolean odd= p == (first == null ? player : first);
+        return weights.get(EvalWeights.Term.GOOD_THREAT, numEmpty) * b.countThreats(p, odd)
+                + weights.get(EvalWeights.Term.OTHER_THREAT, numEmpty) * b.countThreats(p, !odd);
     }
 
 }
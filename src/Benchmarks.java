@@ -0,0 +1,256 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/** Microbenchmarks of the hot paths of Board, State and AI: copying a
+ *  Board, generating moves, making and undoing moves, checking for a win,
+ *  evaluating a leaf, creating the children of a State, and full searches
+ *  of depth 4 to 9. Every benchmark runs over the same reference positions.
+ *
+ *  Each benchmark is warmed up, so that the JIT compiler has done its work,
+ *  and then measured in several rounds of fixed time. For each it prints
+ *  the mean number of operations per second, the spread over the rounds,
+ *  and the number of bytes allocated per operation. Run it as
+ *      java Benchmarks [-ms n] [-rounds n] [-save file] [-baseline file]
+ *          [-threshold percent] [name ...]
+ *  where each name selects the benchmarks whose name contains it (all if
+ *  there is none). -save writes the results to a file, and -baseline
+ *  compares them with a file written earlier: every benchmark that is more
+ *  than -threshold percent (default 10) slower than in the baseline is
+ *  reported, and the exit status is then 1, so the comparison can gate a
+ *  change. */
+public class Benchmarks {
+
+    /** An operation that is measured. It returns a value that depends on
+     *  its work, so that the work cannot be optimized away. */
+    private interface Op {
+        long run();
+    }
+
+    /** The reference positions (see Positions.REFERENCE) as Boards. */
+    private static final Board[] boards= new Board[Positions.REFERENCE.size()];
+
+    /** toPlay[i] is the Player to play on boards[i]. */
+    private static final Board.Player[] toPlay= new Board.Player[boards.length];
+
+    static {
+        for (int i= 0; i < boards.length; i++) {
+            boards[i]= Positions.play(Positions.REFERENCE.get(i));
+            toPlay[i]= Positions.toPlay(boards[i]);
+        }
+    }
+
+    /** Receives the results of the operations, so that they are used. */
+    private static volatile long sink;
+
+    /** The benchmarks, by name, in the order in which they run. */
+    private static final Map<String, Op> benchmarks= new LinkedHashMap<String, Op>();
+
+    static {
+        benchmarks.put("board.copy", () -> {
+            long r= 0;
+            for (Board b : boards)
+                r += new Board(b).getNumEmpty();
+            return r;
+        });
+        benchmarks.put("board.getPossibleMoves", () -> {
+            long r= 0;
+            for (int i= 0; i < boards.length; i++)
+                r += boards[i].getPossibleMoves(toPlay[i]).length;
+            return r;
+        });
+        benchmarks.put("board.makeUndo", () -> {
+            long r= 0;
+            for (int i= 0; i < boards.length; i++) {
+                Board b= boards[i];
+                for (int c= 0; c < Board.NUM_COLS; c++) {
+                    if (!b.canPlay(c)) continue;
+                    b.makeMove(toPlay[i], c);
+                    r += b.getHash(toPlay[i]);
+                    b.undoMove(c);
+                }
+            }
+            return r;
+        });
+        benchmarks.put("board.hasConnectFour", () -> {
+            long r= 0;
+            for (Board b : boards)
+                if (b.hasConnectFour() == null) r++;
+            return r;
+        });
+        benchmarks.put("board.lastMoveWins", () -> {
+            long r= 0;
+            for (int i= 0; i < boards.length; i++) {
+                Board b= boards[i];
+                for (int c= 0; c < Board.NUM_COLS; c++) {
+                    if (!b.canPlay(c)) continue;
+                    b.makeMove(toPlay[i], c);
+                    if (b.lastMoveWins()) r++;
+                    b.undoMove(c);
+                }
+            }
+            return r;
+        });
+        for (AI.Evaluation e : AI.Evaluation.values()) {
+            AI[] ais= new AI[boards.length];
+            for (int i= 0; i < boards.length; i++) {
+                ais[i]= new AI(toPlay[i], 1, AI.Search.DEPTH_FIRST);
+                ais[i].setEvaluation(e);
+            }
+            benchmarks.put("ai.evaluateBoard." + e, () -> {
+                long r= 0;
+                for (int i= 0; i < boards.length; i++)
+                    r += ais[i].evaluateBoard(boards[i]);
+                return r;
+            });
+        }
+        benchmarks.put("state.initializeChildren", () -> {
+            long r= 0;
+            for (int i= 0; i < boards.length; i++) {
+                State s= new State(toPlay[i], boards[i], null);
+                s.initializeChildren();
+                r += s.getChildren().length;
+            }
+            return r;
+        });
+        for (AI.Search search : AI.Search.values()) {
+            // Minimax builds the whole tree, which is too big beyond depth 6
+            int maxDepth= search == AI.Search.MINIMAX ? 6 : 9;
+            for (int d= 4; d <= maxDepth; d++) {
+                int depth= d;
+                benchmarks.put("ai.getMoves." + search + "." + d, () -> {
+                    long r= 0;
+                    for (int i= 0; i < boards.length; i++)
+                        r += new AI(toPlay[i], depth, search).getMoves(boards[i]).length;
+                    return r;
+                });
+            }
+        }
+    }
+
+    /** Run the benchmarks selected by args, as given in the class comment. */
+    public static void main(String[] args) throws IOException {
+        long ms= 1000;
+        int rounds= 5;
+        File save= null;
+        File baseline= null;
+        double threshold= 10;
+        List<String> names= new ArrayList<String>();
+        for (int i= 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-ms": ms= Long.parseLong(args[++i]); break;
+                case "-rounds": rounds= Integer.parseInt(args[++i]); break;
+                case "-save": save= new File(args[++i]); break;
+                case "-baseline": baseline= new File(args[++i]); break;
+                case "-threshold": threshold= Double.parseDouble(args[++i]); break;
+                default: names.add(args[i]);
+            }
+        }
+
+        Map<String, Double> results= new LinkedHashMap<String, Double>();
+        System.out.printf("%-32s %14s %8s %12s%n", "benchmark", "ops/s", "+-%", "B/op");
+        for (Map.Entry<String, Op> e : benchmarks.entrySet()) {
+            if (!selected(e.getKey(), names)) continue;
+            Op op= e.getValue();
+            measure(op, ms);  // warm-up
+            double[] rates= new double[rounds];
+            long allocated= 0;
+            long ops= 0;
+            for (int r= 0; r < rounds; r++) {
+                long bytes= allocatedBytes();
+                long start= System.nanoTime();
+                long n= measure(op, ms);
+                rates[r]= n * 1e9 / (System.nanoTime() - start);
+                allocated += allocatedBytes() - bytes;
+                ops += n;
+            }
+            double mean= mean(rates);
+            results.put(e.getKey(), mean);
+            System.out.printf("%-32s %14.1f %8.1f %12s%n", e.getKey(), mean,
+                    100 * spread(rates, mean) / mean,
+                    allocatedBytes() < 0 ? "n/a" : String.valueOf(allocated / ops));
+        }
+
+        if (save != null) {
+            try (PrintWriter out= new PrintWriter(new FileWriter(save))) {
+                for (Map.Entry<String, Double> e : results.entrySet())
+                    out.println(e.getKey() + " " + e.getValue());
+            }
+        }
+        if (baseline != null && !compare(results, baseline, threshold)) System.exit(1);
+    }
+
+    /** Return true iff the benchmark called name is selected by names: names
+     *  is empty or name contains one of them. */
+    private static boolean selected(String name, List<String> names) {
+        if (names.isEmpty()) return true;
+        for (String n : names) {
+            if (name.contains(n)) return true;
+        }
+        return false;
+    }
+
+    /** Run op repeatedly for about ms milliseconds and return the number of
+     *  times it ran. At least one run is made. */
+    private static long measure(Op op, long ms) {
+        long end= System.nanoTime() + ms * 1000000;
+        long n= 0;
+        long r= 0;
+        do {
+            r += op.run();
+            n++;
+        } while (System.nanoTime() - end < 0);
+        sink= r;
+        return n;
+    }
+
+    /** Return the number of bytes allocated so far by the calling thread
+     *  (-1 if the virtual machine cannot tell). */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean= ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1;
+        return ((com.sun.management.ThreadMXBean) bean).getCurrentThreadAllocatedBytes();
+    }
+
+    /** Return the mean of x. */
+    private static double mean(double[] x) {
+        double sum= 0;
+        for (double v : x)
+            sum += v;
+        return sum / x.length;
+    }
+
+    /** Return the largest distance of an element of x from mean. */
+    private static double spread(double[] x, double mean) {
+        double max= 0;
+        for (double v : x)
+            max= Math.max(max, Math.abs(v - mean));
+        return max;
+    }
+
+    /** Print the change of every result against the rate in file baseline,
+     *  as written by -save, and return false iff a benchmark is more than
+     *  threshold percent slower than there. Benchmarks missing from either
+     *  side are skipped. */
+    private static boolean compare(Map<String, Double> results, File baseline, double threshold)
+            throws IOException {
+        Map<String, Double> before= new HashMap<String, Double>();
+        try (BufferedReader in= new BufferedReader(new FileReader(baseline))) {
+            for (String line= in.readLine(); line != null; line= in.readLine()) {
+                String[] fields= line.trim().split("\\s+");
+                if (fields.length == 2) before.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+        boolean ok= true;
+        System.out.printf("%nChange against %s:%n", baseline);
+        for (Map.Entry<String, Double> e : results.entrySet()) {
+            Double old= before.get(e.getKey());
+            if (old == null) continue;
+            double change= 100 * (e.getValue() - old) / old;
+            boolean slower= change < -threshold;
+            ok &= !slower;
+            System.out.printf("%-32s %+8.1f%%%s%n", e.getKey(), change, slower ? "  SLOWER" : "");
+        }
+        return ok;
+    }
+}
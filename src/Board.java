@@ -2,7 +2,9 @@ import java.util.*;
 
 /** An instance represents a grid of pieces from two opposing
  *  players in a game of Connect Four. The grid is 0-indexed first by rows
- *  starting at the top, then by columns 0-indexed starting at the left. */
+ *  starting at the top, then by columns 0-indexed starting at the left.
+ *  Internally, each player's pieces are stored in one long used as a bitboard,
+ *  so copying a Board copies two longs. */
 public class Board {
     /** The number of rows on the Connect Four board. */
     public static final int NUM_ROWS= 6;
@@ -28,29 +30,81 @@ public class Board {
         }
     }
 
-    /** The grid of Player pieces. */
-    private Player[][] board;
+    /** Number of bits used per column in the bitboards: NUM_ROWS cells plus
+     *  one sentinel bit on top that is always 0, so that shifting a bitboard
+     *  never carries a piece from one column into the next. */
+    static final int H1= NUM_ROWS + 1;
+
+    /** Bitboard of the bottom tile of every column. */
+    static final long BOTTOM= bottomMask();
+
+    /** Bitboard of every tile of the board. */
+    static final long FULL= ((1L << NUM_ROWS) - 1) * BOTTOM;
+
+    /** Bitboard of the tiles in odd rows counted from the bottom (the 1st,
+     *  3rd, ... rows). */
+    private static final long ODD_ROWS= 0x15 * BOTTOM;
+
+    /** Bit distances between neighbouring tiles in a row: horizontal and
+     *  the two diagonals. */
+    private static final int[] shifts= {H1, H1 - 1, H1 + 1};
+
+    /** Bitboards of all locations where it is possible to achieve connect four,
+     *  in the same order as winLocations(). */
+    private static final long[] windows= windowMasks();
+
+    /** windowsThrough[i] holds the bitboards of the win locations that contain
+     *  bit i; it is empty for the sentinel bits. */
+    private static final long[][] windowsThrough= windowsByTile();
+
+    /** Random keys for Zobrist hashing: zobrist[p][i] is xor-ed into the hash
+     *  of a Board when Player p has a piece at bit i. */
+    private static final long[][] zobrist= zobristKeys();
+
+    /** Key xor-ed into a Zobrist hash when it is YELLOW's turn to play. It is
+     *  the key of a sentinel bit, which never holds a piece. */
+    private static final long yellowToPlay= zobrist[Player.YELLOW.ordinal()][NUM_ROWS];
+
+    /** The pieces of each player, one bit per tile. Tile (r, c) is bit
+     *  c*H1 + (NUM_ROWS - 1 - r), i.e. each column is a run of H1 bits
+     *  filled from the bottom of the board upward. */
+    private long red;
+    private long yellow;
+
+    /** The bitboard of the most recently placed piece (0 if none). */
+    private long lastTile;
+
+    /** The first Player to get four in a row (null if no player has). */
+    private Player winner;
+
+    /** The Zobrist hash of the pieces on this Board. */
+    private long hash;
+
+    /** The number of RED's pieces minus the number of YELLOW's pieces, summed
+     *  over all win locations. Since each piece adds the number of win
+     *  locations through its tile, it is kept up to date by makeMove and
+     *  undoMove instead of being recounted. */
+    private int balance;
 
     /** Constructor: an empty Board. */
     public Board() {
-        board= new Player[NUM_ROWS][NUM_COLS];
     }
 
     /** Constructor: a duplicate of Board b. */
     public Board(Board b) {
-        board= new Player[NUM_ROWS][NUM_COLS];
-        for (int r= 0; r < NUM_ROWS; r++) {
-            for (int c= 0; c < NUM_COLS; c++) {
-                board[r][c]= b.board[r][c];
-            }
-        }
+        red= b.red;
+        yellow= b.yellow;
+        lastTile= b.lastTile;
+        winner= b.winner;
+        hash= b.hash;
+        balance= b.balance;
     }
 
     /** Return the element in row r col c.
      * Precondition: r and c give a position on the board */
     public Player getPlayer(int r, int c) {
         assert 0 <= r  &&  r < NUM_ROWS  &&  0 <= c  &&  c < NUM_COLS;
-        return board[r][c];
+        return getTile(r, c);
     }
 
     /** Constructor: a Board constructed by duplicating b and
@@ -64,27 +118,99 @@ public class Board {
      *  0-indexed starting at the top and columns are 0-indexed starting
      *  at the left. A null return value indicates an empty tile. */
     public Player getTile(int row, int col) {
-        return board[row][col];
+        long bit= cellMask(row, col);
+        if ((red & bit) != 0) return Player.RED;
+        if ((yellow & bit) != 0) return Player.YELLOW;
+        return null;
     }
 
     /** Apply Move move to this Board by placing a piece from move's
      *  player into move's column on this Board. Throw an
      *  IllegalArgumentException if move's column is full on this Board. */
     public void makeMove(Move move) {
-    	// "player" is playing in this "column"
-        Player player= move.getPlayer();
-        int column= move.getColumn();
-        int row= NUM_ROWS - 1;
-        
-        // Find the possible tile and place the player or throw the Exception
-        while (row >= 0) {
-        	if (getTile(row, column) == null) break;
-        	row--;
+        makeMove(move.getPlayer(), move.getColumn());
+    }
+
+    /** Apply the move of player into column to this Board, exactly like
+     *  makeMove(new Move(player, column)) but without creating a Move.
+     *  Throw an IllegalArgumentException if column is full on this Board. */
+    public void makeMove(Player player, int column) {
+        long mask= red | yellow;
+        if ((mask & topMask(column)) != 0)
+            throw new IllegalArgumentException("Column " + column + " is already full.");
+
+        // Adding the column's bottom bit carries up to its lowest empty tile
+        long tile= (mask + bottomMask(column)) & columnMask(column);
+        if (player == Player.RED) red |= tile;
+        else yellow |= tile;
+        int i= Long.numberOfTrailingZeros(tile);
+        hash ^= zobrist[player.ordinal()][i];
+        balance += player == Player.RED ? windowsThrough[i].length : -windowsThrough[i].length;
+
+        // Only lines through the new piece can have become four in a row
+        lastTile= tile;
+        if (winner == null && lastMoveWins()) winner= player;
+    }
+
+    /** Remove the topmost piece of column from this Board, undoing the move
+     *  that put it there. Afterwards there is no last move, so lastMoveWins()
+     *  is false until the next makeMove. Throw an IllegalArgumentException if
+     *  column is empty on this Board. */
+    public void undoMove(int column) {
+        long inColumn= (red | yellow) & columnMask(column);
+        if (inColumn == 0)
+            throw new IllegalArgumentException("Column " + column + " is empty.");
+
+        long tile= Long.highestOneBit(inColumn);
+        Player player= (red & tile) != 0 ? Player.RED : Player.YELLOW;
+        int i= Long.numberOfTrailingZeros(tile);
+        hash ^= zobrist[player.ordinal()][i];
+        balance -= player == Player.RED ? windowsThrough[i].length : -windowsThrough[i].length;
+        red &= ~tile;
+        yellow &= ~tile;
+        lastTile= 0;
+        if (winner != null) winner= findConnectFour();
+    }
+
+    /** Return the 64-bit Zobrist hash of this Board with Player toPlay to
+     *  play next. Equal positions have equal hashes; different positions
+     *  have different hashes with high probability. */
+    public long getHash(Player toPlay) {
+        return toPlay == Player.YELLOW ? hash ^ yellowToPlay : hash;
+    }
+
+    /** Return the bitboard of Player p's pieces. Tile (r, c) is bit
+     *  c*(NUM_ROWS+1) + (NUM_ROWS-1-r): each column is a run of NUM_ROWS+1
+     *  bits, filled from the bottom of the board upward, whose top bit is
+     *  always 0. */
+    public long getPieces(Player p) {
+        return p == Player.RED ? red : yellow;
+    }
+
+    /** Return the number of pieces in column col. */
+    public int getHeight(int col) {
+        return Long.bitCount((red | yellow) & columnMask(col));
+    }
+
+    /** Return the number of Player p's pieces in column col. */
+    public int countPieces(Player p, int col) {
+        return Long.bitCount(getPieces(p) & columnMask(col));
+    }
+
+    /** Return true iff a piece can still be placed in column col. */
+    public boolean canPlay(int col) {
+        return ((red | yellow) & topMask(col)) == 0;
+    }
+
+    /** Return true iff the piece placed by the most recent makeMove completed
+     *  four in a row. Only the win locations through that piece are checked. */
+    public boolean lastMoveWins() {
+        if (lastTile == 0) return false;
+        long pieces= (red & lastTile) != 0 ? red : yellow;
+        for (long window : windowsThrough[Long.numberOfTrailingZeros(lastTile)]) {
+            if ((pieces & window) == window) return true;
         }
-        if (row < 0)
-        	throw new IllegalArgumentException("Column " + column + " is already full.");
-        else
-        	board[row][column]= player;
+        return false;
     }
 
     /** Return an array of all moves that can possibly be made by Player p on this
@@ -99,13 +225,18 @@ public class Board {
         // If the game is over, return an array of length 0
         if (hasConnectFour() != null)
         	return Move.length0;
-        else {
-        	List<Move> possibleMoves= new ArrayList<Move>();
-        	for (int column= 0; column < NUM_COLS; column++)
-        		if (getTile(0, column) == null)
-        			possibleMoves.add(new Move(p, column));
-        	return possibleMoves.toArray(Move.length0);
-        }
+
+        int n= 0;
+        for (int column= 0; column < NUM_COLS; column++)
+            if (canPlay(column)) n++;
+        if (n == 0) return Move.length0;
+
+        Move[] possibleMoves= new Move[n];
+        n= 0;
+        for (int column= 0; column < NUM_COLS; column++)
+            if (canPlay(column))
+                possibleMoves[n++]= new Move(p, column);
+        return possibleMoves;
     }
 
     /** Return a representation of this board */
@@ -117,9 +248,10 @@ public class Board {
      *  prepended to each line. Typically, indent contain space characters. */
     public String toString(String indent) {
         String str = "";
-        for (Player[] row : board) {
+        for (int r= 0; r < NUM_ROWS; r++) {
             str += indent + "|";
-            for (Player spot : row) {
+            for (int c= 0; c < NUM_COLS; c++) {
+                Player spot= getTile(r, c);
                 if (spot == null) {
                     str += " |";
                 } else if (spot == Player.RED) {
@@ -133,16 +265,84 @@ public class Board {
         return str;
     }
 
-    /** Return the Player that has four in a row (or null if no player has). */
+    /** Return the Player that has four in a row (or null if no player has).
+     *  This is kept up to date by makeMove, so it takes constant time. */
     public Player hasConnectFour() {
-        for (Player[] loc : winLocations()) {
-            if (loc[0] != null && loc[0] == loc[1] && loc[0] == loc[2] && loc[0] == loc[3]) {
-                return loc[0];
-            }
+        return winner;
+    }
+
+    /** Return the Player that has four in a row (or null if no player has),
+     *  found by checking every win location. */
+    private Player findConnectFour() {
+        for (long window : windows) {
+            if ((red & window) == window) return Player.RED;
+            if ((yellow & window) == window) return Player.YELLOW;
         }
         return null;
     }
 
+    /** Return the number of p's pieces minus the number of p's opponent's
+     *  pieces, summed over all win locations. This is the same sum as walking
+     *  winLocations(), but it takes constant time and allocates nothing. */
+    public int windowBalance(Player p) {
+        return p == Player.RED ? balance : -balance;
+    }
+
+    /** Return the number of win locations that hold exactly k of Player p's
+     *  pieces and none of the opponent's. */
+    public int countOpenWindows(Player p, int k) {
+        long mine= getPieces(p);
+        long theirs= getPieces(p.opponent());
+        int n= 0;
+        for (long window : windows) {
+            if ((window & theirs) == 0 && Long.bitCount(window & mine) == k) n++;
+        }
+        return n;
+    }
+
+    /** Return the number of threats of Player p on this Board in odd rows,
+     *  counted from the bottom, if odd is true, and in even rows if not. A
+     *  threat is an empty tile that would complete four in a row for p,
+     *  whether or not a piece can be played there yet. */
+    public int countThreats(Player p, boolean odd) {
+        long threats= winningTiles(p == Player.RED ? red : yellow, red | yellow);
+        return Long.bitCount(threats & (odd ? ODD_ROWS : FULL & ~ODD_ROWS));
+    }
+
+    /** Return the bitboard of the empty tiles that complete four in a row
+     *  for the bitboard pieces, given that the bitboard mask holds all pieces.
+     *  Both use the layout of getPieces. */
+    static long winningTiles(long pieces, long mask) {
+        // Vertical
+        long r= (pieces << 1) & (pieces << 2) & (pieces << 3);
+        // Horizontal, then the two diagonals
+        for (int shift : shifts) {
+            long p= (pieces << shift) & (pieces << 2 * shift);
+            r |= p & (pieces << 3 * shift);
+            r |= p & (pieces >> shift);
+            p= (pieces >> shift) & (pieces >> 2 * shift);
+            r |= p & (pieces << shift);
+            r |= p & (pieces >> 3 * shift);
+        }
+        return r & (FULL ^ mask);
+    }
+
+    /** Return the bitboard of the tiles where a piece can be played, given
+     *  that the bitboard mask holds all pieces. */
+    static long possible(long mask) {
+        return (mask + BOTTOM) & FULL;
+    }
+
+    /** Return true iff every tile of this Board is filled. */
+    public boolean isFull() {
+        return Long.bitCount(red | yellow) == NUM_ROWS * NUM_COLS;
+    }
+
+    /** Return the number of empty tiles on this Board. */
+    public int getNumEmpty() {
+        return NUM_ROWS * NUM_COLS - Long.bitCount(red | yellow);
+    }
+
     /** Return a list of all locations where it is possible to
      *  achieve connect four. In this context, a "win location" is an
      *  array of the Player pieces on this Board from four connected tiles. */
@@ -168,15 +368,101 @@ public class Board {
      * static variable deltas.
      */
     public Player[] possibleWin(int r, int c, int[] delta) {
+        if (!isWindow(r, c, delta)) return null;
         Player[] location = new Player[4];
         for (int i = 0; i < 4; i++) {
-            int newR = r + i*delta[0];
-            int newC= c + i*delta[1];
-            if (!(0 <= newR  &&  newR < NUM_ROWS  &&  0 <= newC  &&  newC <  NUM_COLS)) {
-                return null;
-            }
-            location[i]= board[newR][newC];
+            location[i]= getTile(r + i*delta[0], c + i*delta[1]);
         }
         return location;
     }
+
+    /** Return true iff the 4 locations in a row beginning at (r, c) going in
+     *  the direction given by delta are all on the board. */
+    private static boolean isWindow(int r, int c, int[] delta) {
+        int lastR= r + 3*delta[0];
+        int lastC= c + 3*delta[1];
+        return 0 <= lastR  &&  lastR < NUM_ROWS  &&  0 <= lastC  &&  lastC < NUM_COLS;
+    }
+
+    /** Return the bitboards of all win locations, in the order of winLocations(). */
+    private static long[] windowMasks() {
+        List<Long> masks= new ArrayList<Long>();
+        for (int[] delta : deltas) {
+            for (int r= 0; r < NUM_ROWS; r++) {
+                for (int c= 0; c < NUM_COLS; c++) {
+                    if (isWindow(r, c, delta)) {
+                        long mask= 0;
+                        for (int i= 0; i < 4; i++) {
+                            mask |= cellMask(r + i*delta[0], c + i*delta[1]);
+                        }
+                        masks.add(mask);
+                    }
+                }
+            }
+        }
+        long[] result= new long[masks.size()];
+        for (int i= 0; i < result.length; i++) {
+            result[i]= masks.get(i);
+        }
+        return result;
+    }
+
+    /** Return, for each bit of a bitboard, the win locations containing it. */
+    private static long[][] windowsByTile() {
+        long[][] result= new long[NUM_COLS * H1][];
+        for (int i= 0; i < result.length; i++) {
+            int n= 0;
+            for (long window : windows) {
+                if ((window & (1L << i)) != 0) n++;
+            }
+            result[i]= new long[n];
+            n= 0;
+            for (long window : windows) {
+                if ((window & (1L << i)) != 0) result[i][n++]= window;
+            }
+        }
+        return result;
+    }
+
+    /** Return the bitboard holding only tile (row, col). */
+    private static long cellMask(int row, int col) {
+        return 1L << (col * H1 + NUM_ROWS - 1 - row);
+    }
+
+    /** Return the bitboard holding only the bottom tile of column col. */
+    static long bottomMask(int col) {
+        return 1L << (col * H1);
+    }
+
+    /** Return the bitboard holding only the top tile of column col. */
+    private static long topMask(int col) {
+        return 1L << (col * H1 + NUM_ROWS - 1);
+    }
+
+    /** Return the bitboard holding the bottom tile of every column. */
+    private static long bottomMask() {
+        long mask= 0;
+        for (int c= 0; c < NUM_COLS; c++) {
+            mask |= bottomMask(c);
+        }
+        return mask;
+    }
+
+    /** Return the bitboard holding every tile of column col. */
+    static long columnMask(int col) {
+        return ((1L << NUM_ROWS) - 1) << (col * H1);
+    }
+
+    /** Return fixed pseudo-random Zobrist keys for both players and every bit.
+     *  The seed is fixed so that hashes are the same from run to run. */
+    private static long[][] zobristKeys() {
+        Random rand= new Random(2110);
+        long[][] keys= new long[Player.values().length][NUM_COLS * H1];
+        for (long[] row : keys) {
+            for (int i= 0; i < row.length; i++) {
+                row[i]= rand.nextLong();
+            }
+        }
+        return keys;
+    }
 }
@@ -0,0 +1,8 @@
+/** An instance maps Connect Four positions to the best column to play there. */
+public interface Book {
+
+	/** Return the best column for Player toPlay on Board b, or -1 if b is
+	 *  not in this Book. Precondition: b is not null. */
+	public int bestColumn(Board b, Board.Player toPlay);
+
+}
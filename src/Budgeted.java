@@ -0,0 +1,14 @@
+/** An instance is a Solver whose searches can be capped from outside, e.g.
+ *  by a scheduler that shares threads between many games. A cap only cuts
+ *  short the search the Solver would make anyway, and leaves its own
+ *  settings unchanged. */
+public interface Budgeted {
+
+	/** Make the following getMoves calls stop searching when ms ms have
+	 *  passed or about n positions have been searched, whichever comes
+	 *  first, and return the best Moves found by then (no cap on the time if
+	 *  ms is 0, none on the positions if n is 0, so setBudget(0, 0) removes
+	 *  the cap). Precondition: ms >= 0 and n >= 0. */
+	public void setBudget(long ms, long n);
+
+}
@@ -0,0 +1,199 @@
+import java.io.*;
+import java.util.*;
+
+/** An instance is an immutable set of weights with which an AI evaluates a
+ *  Board. Each Term has an opening and an endgame weight; the weight used on
+ *  a Board is tapered between the two by the number of empty tiles, so it is
+ *  the opening weight on the empty Board and the endgame weight on a full one.
+ *
+ *  Weights are read from a properties file (see load). A line
+ *      center= 4
+ *  sets both weights of a term, and lines
+ *      center.opening= 6
+ *      center.endgame= 0
+ *  set them one at a time. The score of a win, win, is not tapered: a win is
+ *  worth win times the number of empty tiles left, so faster wins are better.
+ *  Terms missing from a file keep their DEFAULT weights. */
+public class EvalWeights {
+
+    /** The terms of the evaluation, each counted for the AI's player minus
+     *  the opponent. */
+    public enum Term {
+        /** Per piece in each win location through it (Board.windowBalance). */
+        PIECE("piece"),
+        /** Per win location holding two of the player's pieces and none of
+         *  the opponent's. */
+        WINDOW2("window2"),
+        /** Per win location holding three of the player's pieces and none of
+         *  the opponent's. */
+        WINDOW3("window3"),
+        /** Per piece in the center column. */
+        CENTER("center"),
+        /** Per threat in a row of the player's own parity (used only by the
+         *  THREATS evaluation, see AI.Evaluation). */
+        GOOD_THREAT("goodThreat"),
+        /** Per other threat (used only by the THREATS evaluation). */
+        OTHER_THREAT("otherThreat");
+
+        /** The name of this term in a weights file. */
+        public final String key;
+
+        Term(String key) {
+            this.key= key;
+        }
+    }
+
+    /** The name of the win score in a weights file. */
+    public static final String WIN= "win";
+
+    /** The number of tiles of a Board. */
+    private static final int TILES= Board.NUM_ROWS * Board.NUM_COLS;
+
+    /** The weights of the evaluation AI has always used. */
+    public static final EvalWeights DEFAULT= new EvalWeights(
+            new int[]{1, 0, 0, 0, 30, 10}, new int[]{1, 0, 0, 0, 30, 10}, 10000);
+
+    private final int[] opening;  // opening[t.ordinal()] is the opening weight of Term t
+    private final int[] endgame;  // endgame[t.ordinal()] is the endgame weight of Term t
+    private final int win;        // the score of a win per empty tile
+
+    /** Constructor: weights with opening weights o, endgame weights e and win
+     *  score w. Precondition: o and e have one element per Term. */
+    private EvalWeights(int[] o, int[] e, int w) {
+        opening= o;
+        endgame= e;
+        win= w;
+    }
+
+    /** Return the weight of Term t on a Board with numEmpty empty tiles. */
+    public int get(Term t, int numEmpty) {
+        int o= opening[t.ordinal()];
+        int e= endgame[t.ordinal()];
+        if (o == e) return o;
+        return (o * numEmpty + e * (TILES - numEmpty)) / TILES;
+    }
+
+    /** Return the opening weight of Term t. */
+    public int getOpening(Term t) {
+        return opening[t.ordinal()];
+    }
+
+    /** Return the endgame weight of Term t. */
+    public int getEndgame(Term t) {
+        return endgame[t.ordinal()];
+    }
+
+    /** Return the score of a win per empty tile. */
+    public int getWin() {
+        return win;
+    }
+
+    /** Return true iff Term t has weight 0 throughout the game, so that an AI
+     *  need not compute it. */
+    public boolean isZero(Term t) {
+        return opening[t.ordinal()] == 0 && endgame[t.ordinal()] == 0;
+    }
+
+    /** Return a copy of these weights in which Term t has opening weight o
+     *  and endgame weight e. */
+    public EvalWeights with(Term t, int o, int e) {
+        int[] o2= opening.clone();
+        int[] e2= endgame.clone();
+        o2[t.ordinal()]= o;
+        e2[t.ordinal()]= e;
+        return new EvalWeights(o2, e2, win);
+    }
+
+    /** Return the weights in file f, in the format of the class comment.
+     *  Throw an IOException if f cannot be read and an
+     *  IllegalArgumentException if it holds an unknown key or a value that is
+     *  not an int, or if the win score is not positive. */
+    public static EvalWeights load(File f) throws IOException {
+        Properties props= new Properties();
+        try (Reader in= new BufferedReader(new FileReader(f))) {
+            props.load(in);
+        }
+        return parse(props);
+    }
+
+    /** Return the weights given by props, in the format of the class comment;
+     *  terms it does not mention keep their DEFAULT weights.
+     *  Throw an IllegalArgumentException if props holds an unknown key or a
+     *  value that is not an int, or if the win score is not positive. */
+    public static EvalWeights parse(Properties props) {
+        int[] o= DEFAULT.opening.clone();
+        int[] e= DEFAULT.endgame.clone();
+        int w= DEFAULT.win;
+        for (String name : props.stringPropertyNames()) {
+            int value= parseValue(name, props.getProperty(name));
+            if (name.equals(WIN)) {
+                w= value;
+                continue;
+            }
+            int dot= name.indexOf('.');
+            String key= dot < 0 ? name : name.substring(0, dot);
+            String phase= dot < 0 ? "" : name.substring(dot + 1);
+            Term t= term(key);
+            if (t == null || !(phase.isEmpty() || phase.equals("opening") || phase.equals("endgame")))
+                throw new IllegalArgumentException("Unknown evaluation weight: " + name);
+            if (!phase.equals("endgame")) o[t.ordinal()]= value;
+            if (!phase.equals("opening")) e[t.ordinal()]= value;
+        }
+        if (w <= 0)
+            throw new IllegalArgumentException("win must be positive: " + w);
+        return new EvalWeights(o, e, w);
+    }
+
+    /** Return the int value of the weight called name whose text is text.
+     *  Throw an IllegalArgumentException if text is not an int. */
+    private static int parseValue(String name, String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Weight " + name + " is not an int: " + text);
+        }
+    }
+
+    /** Return the Term whose key is key (null if there is none). */
+    private static Term term(String key) {
+        for (Term t : Term.values()) {
+            if (t.key.equals(key)) return t;
+        }
+        return null;
+    }
+
+    /** Write these weights to file f in the format read by load.
+     *  Throw an IOException if f cannot be written. */
+    public void write(File f) throws IOException {
+        try (Writer out= new BufferedWriter(new FileWriter(f))) {
+            out.write(toString());
+        }
+    }
+
+    /** Return these weights in the format read by load, one per line. */
+    public @Override String toString() {
+        StringBuilder sb= new StringBuilder();
+        for (Term t : Term.values()) {
+            if (getOpening(t) == getEndgame(t)) {
+                sb.append(t.key).append("= ").append(getOpening(t)).append('\n');
+            } else {
+                sb.append(t.key).append(".opening= ").append(getOpening(t)).append('\n');
+                sb.append(t.key).append(".endgame= ").append(getEndgame(t)).append('\n');
+            }
+        }
+        sb.append(WIN).append("= ").append(win).append('\n');
+        return sb.toString();
+    }
+
+    /** Return true iff ob is an EvalWeights with the same weights as this one. */
+    public @Override boolean equals(Object ob) {
+        if (!(ob instanceof EvalWeights)) return false;
+        EvalWeights w= (EvalWeights) ob;
+        return Arrays.equals(opening, w.opening) && Arrays.equals(endgame, w.endgame) && win == w.win;
+    }
+
+    /** Return a hash code consistent with equals. */
+    public @Override int hashCode() {
+        return Objects.hash(Arrays.hashCode(opening), Arrays.hashCode(endgame), win);
+    }
+}
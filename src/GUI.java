@@ -21,17 +21,21 @@ public class GUI extends JFrame implements ActionListener {
          * can be a Human, AI, or Dummy. Human and Dummy constructors have
          * a player parameter; the AI constructor has a player and depth
          * as parameters, with the a depth used to recurse when searching the
-         * game space. */
-        Solver p1= new AI(Board.Player.RED, 6);
-        Solver p2= new AI(Board.Player.YELLOW, 6);
+         * game space, and optionally the search to use. An AI with the
+         * DEPTH_FIRST search (or a time limit) thinks on its opponent's time
+         * if pondering is true; other Solvers ignore pondering. */
+        Solver p1= new AI(Board.Player.RED, 6, AI.Search.DEPTH_FIRST);
+        Solver p2= new AI(Board.Player.YELLOW, 6, AI.Search.DEPTH_FIRST);
         //Solver p1= new Dummy(Board.Player.RED);
         //Solver p2= new Dummy(Board.Player.YELLOW);
         //Solver p1 = new Human(Board.Player.RED);
         //Solver p2 = new Human(Board.Player.YELLOW);
+        boolean pondering= true;
 
         /* --------------------------------- Do not change below here. --------------------------------- */
 
         Game game= new Game(p1, p2);
+        game.setPondering(pondering);
         game.setGUI(new GUI(game));
         game.runGame();
     }
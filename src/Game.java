@@ -7,6 +7,8 @@ public class Game {
     private Solver activePlayer;  // The possible moves to the player whose turn it is
     private GUI gui;
     private Board.Player winner;  // null
+    private boolean verbose= true;  // without a GUI, print each move to the console
+    private boolean pondering;  // players that are Ponderers think on the opponent's time
 
     // Change this if you would like a delay between plays
     private static final long SLEEP_INTERVAL= 0; //in milliseconds
@@ -165,6 +167,23 @@ public class Game {
         this.gui= gui;
     }
 
+    /** Make this Game print each move and the result to the console when it
+     *  has no GUI iff verbose is true (the default). */
+    public void setVerbose(boolean verbose) {
+        this.verbose= verbose;
+    }
+
+    /** Make the players of this Game that are Ponderers think while their
+     *  opponent is to move iff pondering is true. It is off by default. */
+    public void setPondering(boolean pondering) {
+        this.pondering= pondering;
+    }
+
+    /** Return the winner of this Game (null if it is a tie or not over). */
+    public Board.Player getWinner() {
+        return winner;
+    }
+
     /** Notify this Game that column col has been clicked by a user. */
     public void columnClicked(int col) {
         if (activePlayer instanceof Human) {
@@ -179,10 +198,13 @@ public class Game {
             //Checking to see that the move can be made (not overflowing a column)
             boolean moveIsSafe= false;
             Move nextMove= null;
+            if (activePlayer instanceof Ponderer) {
+                ((Ponderer) activePlayer).stopPondering();
+            }
             while (!moveIsSafe) {
                 Move[] bestMoves= activePlayer.getMoves(board);
                 if (bestMoves.length == 0) {
-                    gui.setMsg("Game cannot continue until a Move is produced.");
+                    message("Game cannot continue until a Move is produced.");
                     continue;
                 } else {
                     nextMove= bestMoves[0];
@@ -190,17 +212,23 @@ public class Game {
                 if (board.getTile(0,nextMove.getColumn()) == null) {
                     moveIsSafe= true; 
                 } else {
-                    gui.setMsg("Illegal Move: Cannot place disc in full column. Try again.");
+                    message("Illegal Move: Cannot place disc in full column. Try again.");
                 }
             }
 
             board.makeMove(nextMove);
             if (gui == null) {
-                System.out.println(nextMove);
-                System.out.println(board);
+                if (verbose) {
+                    System.out.println(nextMove);
+                    System.out.println(board);
+                }
             } else {
                 gui.updateGUI(board, nextMove);
             }
+            // The player who just moved ponders while the other one thinks
+            if (pondering && activePlayer instanceof Ponderer && !isGameOver()) {
+                ((Ponderer) activePlayer).startPondering(board);
+            }
             activePlayer= (activePlayer == player1 ? player2 : player1);
 
             // The following code causes a delay so that you can easily view the plays
@@ -208,11 +236,18 @@ public class Game {
             try {
                 Thread.sleep(SLEEP_INTERVAL);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                // Keep the interrupt, so that the player's next blocking call
+                // ends the game (e.g. when a GameServer Session is closed)
+                Thread.currentThread().interrupt();
             }
         }
 
+        for (Solver player : new Solver[]{player1, player2}) {
+            if (player instanceof Ponderer) ((Ponderer) player).stopPondering();
+        }
+
         if (gui == null) {
+            if (!verbose) return;
             if (winner == null) {
                 System.out.println("Tie game!");
             } else {
@@ -223,6 +258,13 @@ public class Game {
         }
     }
 
+    /** Show msg on the GUI or, if there is none and this Game is verbose,
+     *  print it to the console. */
+    private void message(String msg) {
+        if (gui != null) gui.setMsg(msg);
+        else if (verbose) System.out.println(msg);
+    }
+
     /** Return true iff this game is over. If the game
      *  is over, set the winner field to the winner; if no winner
      *  set the winner to null. */
@@ -230,15 +272,8 @@ public class Game {
         winner= board.hasConnectFour();
         if (winner != null) return true;
 
-        // if these is an unfilled tile, return false;
-        for (int r= 0; r < Board.NUM_ROWS; r= r+1) {
-            for (int c= 0; c < Board.NUM_COLS; c= c+1) {
-                if (board.getTile(r, c) == null)
-                    return false;
-            }
-        }
-
-        return true;
+        // The game is also over, as a tie, when there is no unfilled tile
+        return board.isFull();
     }
 
 }
@@ -0,0 +1,525 @@
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Hosts many Games at once, each between a remote human and an engine.
+ *  Every Game runs its runGame loop on its own virtual thread, which costs
+ *  almost nothing while the game waits for the human. The engines' getMoves
+ *  calls are sent to a SearchScheduler with a bounded pool of platform
+ *  threads, so the search work never exceeds the cores however many games
+ *  are open, and with the FAIR policy each game gets its share of them.
+ *  Each engine move is capped at a time budget (DEFAULT_BUDGET_MS ms
+ *  unless given to the constructor), so no game holds a thread for long.
+ *
+ *  Virtual threads need Java 21. On older Java, each Game gets a platform
+ *  thread instead, which works but limits the number of games.
+ *
+ *  A Game is played through a Session, either in-process (see open) or over
+ *  a socket with a line protocol:
+ *      client: NEW engine first|second     (engine as in Tournament, within
+ *                          the limits of checkEngine)
+ *      server: TURN c      the human is to move; c is the engine's last
+ *                          column, or -1 if it has not moved yet
+ *      client: PLAY c      play column c
+ *      server: ILLEGAL     column c cannot be played; play another one
+ *      server: MOVE c      the engine ended the game by playing column c
+ *                          (sent just before OVER)
+ *      server: OVER RED|YELLOW|DRAW   the game is over
+ *      server: ERROR msg   the request could not be understood or the
+ *                          engine is not served
+ *  Run it as
+ *      java GameServer serve port [aiThreads]
+ *      java GameServer load games [engine [thinkMs [aiThreads]]]
+ *      java GameServer load host port games [engine [thinkMs]]
+ *  The first serves games on a port. The others are load generators: they
+ *  play games games at once, in-process or against a server, each human
+ *  playing random columns after thinking thinkMs ms, and report the
+ *  throughput and the engine's reply latency (and, in-process, the metrics
+ *  of the scheduler). */
+public class GameServer {
+
+    /** What Session.awaitTurn returns when the game is over. */
+    public static final int GAME_OVER= -2;
+
+    /** What Session.awaitTurn returns when the last column played cannot be
+     *  played; the human is still to move. */
+    public static final int ILLEGAL= -3;
+
+    /** The default engine of the load generators. */
+    public static final String DEFAULT_ENGINE= "ai:6:depth_first";
+
+    /** The deepest AI served, except with the MINIMAX search. */
+    public static final int MAX_DEPTH= 9;
+
+    /** The deepest AI served with the MINIMAX search, which builds the
+     *  whole game tree. */
+    public static final int MAX_MINIMAX_DEPTH= 5;
+
+    /** The most iterations of an mcts engine served. */
+    public static final int MAX_ITERATIONS= 200000;
+
+    /** The default cap in ms on the search of one engine move (see
+     *  SearchScheduler), so that no game holds an engine thread for long. */
+    public static final long DEFAULT_BUDGET_MS= 500;
+
+    private final ExecutorService games;      // runs the Games, one thread each
+    private final SearchScheduler scheduler;  // runs the engines' getMoves calls
+    private final long budgetMs;              // the cap on each engine move in ms
+    private final AtomicInteger open= new AtomicInteger(); // games not over
+
+    /** Constructor: a server whose engines run on aiThreads platform threads,
+     *  shared fairly between the games, with DEFAULT_BUDGET_MS ms per move.
+     *  Precondition: aiThreads >= 1. */
+    public GameServer(int aiThreads) {
+        this(aiThreads, SearchScheduler.Policy.FAIR, DEFAULT_BUDGET_MS);
+    }
+
+    /** Constructor: a server whose engines run on aiThreads platform threads,
+     *  shared between the games by policy, each engine move searching for at
+     *  most budgetMs ms. Every game has priority 0.
+     *  Precondition: aiThreads >= 1 and budgetMs >= 1. */
+    public GameServer(int aiThreads, SearchScheduler.Policy policy, long budgetMs) {
+        if (budgetMs < 1) throw new IllegalArgumentException("No time budget: " + budgetMs);
+        games= newGameExecutor();
+        scheduler= new SearchScheduler(aiThreads, policy);
+        this.budgetMs= budgetMs;
+    }
+
+    /** Return an executor that runs each task on a new virtual thread, or on
+     *  a platform thread before Java 21. Reflection keeps this class
+     *  compiling on older Java. */
+    private static ExecutorService newGameExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /** Return the number of games that are not over. */
+    public int getOpenGames() {
+        return open.get();
+    }
+
+    /** Return the scheduler of the engines' getMoves calls. */
+    public SearchScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /** Start a Game between a remote human and the engine described by
+     *  engine (see Tournament.createSolver), and return its Session. The
+     *  human plays RED and moves first if humanFirst, and plays YELLOW
+     *  otherwise.
+     *  Throw an IllegalArgumentException if engine is not an engine or is
+     *  not served (see checkEngine). */
+    public Session open(String engine, boolean humanFirst) {
+        checkEngine(engine);
+        Board.Player human= humanFirst ? Board.Player.RED : Board.Player.YELLOW;
+        Solver engineSolver= Tournament.createSolver(engine, human.opponent());
+        Session session= new Session(human);
+        Solver solver= scheduler.schedule(session, engineSolver, 0, budgetMs, 0);
+        Board board= new Board();
+        Game game= humanFirst ? new Game(session.remote, solver, board, true)
+                : new Game(solver, session.remote, board, true);
+        game.setVerbose(false);
+        open.incrementAndGet();
+        session.task= games.submit(() -> {
+            try {
+                game.runGame();
+                session.winner= game.getWinner();
+                session.finalColumn= session.remote.engineColumn(board);
+            } finally {
+                open.decrementAndGet();
+                session.turns.add(GAME_OVER);
+            }
+        });
+        return session;
+    }
+
+    /** Throw an IllegalArgumentException unless engine, which may come from
+     *  an untrusted client, is one that this server plays: dummy, an ai of
+     *  depth at most MAX_DEPTH (MAX_MINIMAX_DEPTH with the MINIMAX search,
+     *  the default), an aitime of at most budgetMs ms (the cap on each move,
+     *  which would cut a longer time short) or an mcts of at most
+     *  MAX_ITERATIONS iterations. A perfect engine is never served: its
+     *  table alone takes tens of MB per game, and its search is unbounded.
+     *  The rest of the format is checked by Tournament.createSolver. */
+    public void checkEngine(String engine) {
+        String[] f= engine.split(":");
+        long max;
+        switch (f[0]) {
+            case "dummy":
+                return;
+            case "ai":
+                boolean minimax= f.length < 3 || f[2].equalsIgnoreCase(AI.Search.MINIMAX.name());
+                max= minimax ? MAX_MINIMAX_DEPTH : MAX_DEPTH;
+                break;
+            case "aitime":
+                max= budgetMs;
+                break;
+            case "mcts":
+                max= MAX_ITERATIONS;
+                break;
+            default:
+                throw new IllegalArgumentException("Engine not served: " + engine);
+        }
+        long n;
+        try {
+            n= f.length > 1 ? Long.parseLong(f[1]) : 0;
+        } catch (NumberFormatException e) {
+            n= 0;
+        }
+        if (n < 1 || n > max)
+            throw new IllegalArgumentException("Engine not served: " + engine + " (the limit is "
+                    + max + ")");
+    }
+
+    /** Stop all games and threads of this server. */
+    public void shutdown() {
+        games.shutdownNow();
+        scheduler.shutdown();
+    }
+
+    /** The human side of one Game. All methods must be called by one client
+     *  thread. */
+    public static class Session implements Closeable {
+        private final Board.Player human;    // the color of the human
+        private final RemoteHuman remote= new RemoteHuman();
+        /** The engine's columns (-1 before its first move), ILLEGAL and
+         *  GAME_OVER, in the order in which awaitTurn returns them. */
+        private final BlockingQueue<Integer> turns= new LinkedBlockingQueue<Integer>();
+        /** The columns played by the client. */
+        private final BlockingQueue<Integer> plays= new LinkedBlockingQueue<Integer>();
+        private Future<?> task;              // the task running the Game
+        private volatile Board.Player winner;
+        /** The engine's column of the move that ended the game (-1 if the
+         *  human made the last move or the game is not over). */
+        private volatile int finalColumn= -1;
+
+        /** Constructor: a Session for a human playing color human. */
+        Session(Board.Player human) {
+            this.human= human;
+        }
+
+        /** Return the color of the human. */
+        public Board.Player getPlayer() {
+            return human;
+        }
+
+        /** Wait until the human is to move or the game is over and return
+         *  the engine's last column (-1 if the engine has not moved yet),
+         *  ILLEGAL if the last column played cannot be played, or GAME_OVER. */
+        public int awaitTurn() throws InterruptedException {
+            return turns.take();
+        }
+
+        /** Play column c for the human.
+         *  Precondition: awaitTurn has returned a column since the last play. */
+        public void play(int c) {
+            plays.add(c);
+        }
+
+        /** Return the winner (null for a draw or if the game is not over). */
+        public Board.Player getWinner() {
+            return winner;
+        }
+
+        /** Return the column of the engine's move that ended the game, or -1
+         *  if the human made the last move or the game is not over. Valid
+         *  once awaitTurn has returned GAME_OVER. */
+        public int getFinalColumn() {
+            return finalColumn;
+        }
+
+        /** End the game if it is not over, stopping its thread. */
+        public @Override void close() {
+            task.cancel(true);
+        }
+
+        /** The Solver of the human: it reports the engine's move to the
+         *  client and waits for the client's column. */
+        private class RemoteHuman implements Solver {
+            private Board last= new Board();  // the Board after the human's last move
+            private int lastColumn= -1;       // the engine's last column
+
+            /** See Solver.getMoves for the specification. Columns that cannot
+             *  be played are refused without ending the call. Throw a
+             *  CancellationException if the Session is closed. */
+            public @Override Move[] getMoves(Board b) {
+                int played= engineColumn(b);
+                if (played >= 0) lastColumn= played;
+                try {
+                    turns.add(lastColumn);
+                    int c= plays.take();
+                    while (c < 0 || c >= Board.NUM_COLS || !b.canPlay(c)) {
+                        turns.add(ILLEGAL);
+                        c= plays.take();
+                    }
+                    last= new Board(b);
+                    last.makeMove(human, c);
+                    return new Move[]{ new Move(human, c) };
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Game closed");
+                }
+            }
+
+            /** Return the column the engine played on Board b since the
+             *  human's last move (-1 if it has not played since). */
+            int engineColumn(Board b) {
+                for (int c= 0; c < Board.NUM_COLS; c++) {
+                    if (b.getHeight(c) != last.getHeight(c)) return c;
+                }
+                return -1;
+            }
+        }
+    }
+
+    /** Serve or generate load, as given in the class comment. */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 2 && args[0].equals("serve")) {
+            int aiThreads= args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+            serve(new GameServer(aiThreads), Integer.parseInt(args[1]));
+        } else if (args.length >= 4 && args[0].equals("load") && !isInt(args[1])) {
+            String host= args[1];
+            int port= Integer.parseInt(args[2]);
+            int n= Integer.parseInt(args[3]);
+            String engine= args.length > 4 ? args[4] : DEFAULT_ENGINE;
+            long thinkMs= args.length > 5 ? Long.parseLong(args[5]) : 0;
+            load(n, thinkMs, () -> new SocketClient(host, port, engine));
+        } else if (args.length >= 2 && args[0].equals("load")) {
+            int n= Integer.parseInt(args[1]);
+            String engine= args.length > 2 ? args[2] : DEFAULT_ENGINE;
+            long thinkMs= args.length > 3 ? Long.parseLong(args[3]) : 0;
+            int aiThreads= args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+            GameServer server= new GameServer(aiThreads);
+            try {
+                load(n, thinkMs, () -> new LocalClient(server.open(engine, true)));
+                System.out.println(server.getScheduler());
+            } finally {
+                server.shutdown();
+            }
+        } else {
+            System.err.println("Usage: java GameServer serve port [aiThreads]");
+            System.err.println("       java GameServer load games [engine [thinkMs [aiThreads]]]");
+            System.err.println("       java GameServer load host port games [engine [thinkMs]]");
+        }
+    }
+
+    /** Return true iff s is an int. */
+    private static boolean isInt(String s) {
+        try {
+            Integer.parseInt(s);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /** Accept connections on port forever, serving each with server on a
+     *  thread of its own, with the protocol of the class comment. */
+    private static void serve(GameServer server, int port) throws IOException {
+        try (ServerSocket listener= new ServerSocket(port, 1024)) {
+            System.out.println("Serving games on port " + port);
+            while (true) {
+                Socket socket= listener.accept();
+                server.games.execute(() -> handle(server, socket));
+            }
+        }
+    }
+
+    /** Serve the games requested on socket with server. */
+    private static void handle(GameServer server, Socket socket) {
+        try (Socket s= socket;
+                BufferedReader in= new BufferedReader(new InputStreamReader(s.getInputStream()));
+                PrintWriter out= new PrintWriter(new BufferedWriter(new OutputStreamWriter(s.getOutputStream())), true)) {
+            for (String line= in.readLine(); line != null; line= in.readLine()) {
+                String[] f= line.trim().split("\\s+");
+                if (f.length != 3 || !f[0].equals("NEW") || !(f[2].equals("first") || f[2].equals("second"))) {
+                    out.println("ERROR expected NEW engine first|second");
+                    continue;
+                }
+                Session session;
+                try {
+                    session= server.open(f[1], f[2].equals("first"));
+                } catch (IllegalArgumentException e) {
+                    out.println("ERROR " + e.getMessage());
+                    continue;
+                }
+                try (Session game= session) {
+                    if (!play(game, in, out)) return;
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // The client went away; closing the session ends its game
+        }
+    }
+
+    /** Relay Session game between the client on in and out until the game is
+     *  over, and return true, or return false if the client went away. */
+    private static boolean play(Session game, BufferedReader in, PrintWriter out)
+            throws IOException, InterruptedException {
+        while (true) {
+            int turn= game.awaitTurn();
+            if (turn == GAME_OVER) {
+                if (game.getFinalColumn() >= 0) out.println("MOVE " + game.getFinalColumn());
+                out.println("OVER " + (game.getWinner() == null ? "DRAW" : game.getWinner()));
+                return true;
+            }
+            out.println(turn == ILLEGAL ? "ILLEGAL" : "TURN " + turn);
+            String line= in.readLine();
+            if (line == null) return false;
+            String[] f= line.trim().split("\\s+");
+            int c= f.length == 2 && f[0].equals("PLAY") && isInt(f[1]) ? Integer.parseInt(f[1]) : -1;
+            game.play(c);
+        }
+    }
+
+    /** One simulated human of a load generator. */
+    private interface Client extends Closeable {
+        /** Wait until the human is to move and return the engine's last
+         *  column (-1 if none), or return GAME_OVER. Throw an IOException if
+         *  the last play was refused. */
+        int awaitTurn() throws IOException, InterruptedException;
+
+        /** Play column c. */
+        void play(int c) throws IOException;
+    }
+
+    /** Creates Clients. */
+    private interface ClientFactory {
+        Client create() throws IOException;
+    }
+
+    /** A Client playing an in-process Session. */
+    private static class LocalClient implements Client {
+        private final Session session;
+
+        LocalClient(Session s) {
+            session= s;
+        }
+
+        public @Override int awaitTurn() throws IOException, InterruptedException {
+            int turn= session.awaitTurn();
+            if (turn == ILLEGAL) throw new IOException("Column refused");
+            return turn;
+        }
+
+        public @Override void play(int c) {
+            session.play(c);
+        }
+
+        public @Override void close() {
+            session.close();
+        }
+    }
+
+    /** A Client playing a game on a server over a socket. */
+    private static class SocketClient implements Client {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        /** Constructor: a client that starts a game against engine on the
+         *  server at host and port, moving first. */
+        SocketClient(String host, int port, String engine) throws IOException {
+            socket= new Socket(host, port);
+            in= new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            out= new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream())), true);
+            out.println("NEW " + engine + " first");
+        }
+
+        public @Override int awaitTurn() throws IOException {
+            while (true) {
+                String line= in.readLine();
+                if (line == null || line.startsWith("OVER")) return GAME_OVER;
+                if (line.startsWith("TURN ")) return Integer.parseInt(line.substring(5));
+                if (line.startsWith("ERROR") || line.equals("ILLEGAL")) throw new IOException(line);
+            }
+        }
+
+        public @Override void play(int c) {
+            out.println("PLAY " + c);
+        }
+
+        public @Override void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /** Play n games at once with clients from factory, each human moving
+     *  first and playing random columns after thinking thinkMs ms, and print
+     *  the throughput and the engine's reply latency. */
+    private static void load(int n, long thinkMs, ClientFactory factory) throws Exception {
+        ExecutorService clients= newGameExecutor();
+        long[][] latencies= new long[n][];
+        AtomicInteger failed= new AtomicInteger();
+        long start= System.nanoTime();
+        List<Future<?>> done= new ArrayList<Future<?>>();
+        for (int i= 0; i < n; i++) {
+            int game= i;
+            done.add(clients.submit(() -> {
+                try (Client client= factory.create()) {
+                    latencies[game]= playRandom(client, thinkMs, new SplittableRandom(game));
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : done)
+            f.get();
+        long ms= Math.max(1, (System.nanoTime() - start) / 1000000);
+        clients.shutdown();
+
+        long moves= 0;
+        for (long[] l : latencies)
+            if (l != null) moves += l.length;
+        long[] all= new long[(int) moves];
+        int k= 0;
+        for (long[] l : latencies)
+            if (l != null)
+                for (long ns : l)
+                    all[k++]= ns;
+        Arrays.sort(all);
+        System.out.println((n - failed.get()) + " games (" + failed.get() + " failed) with " + moves
+                + " engine replies in " + ms + " ms: " + moves * 1000 / ms + " replies/s");
+        if (all.length > 0) {
+            System.out.printf("reply latency ms: mean %.2f, p50 %.2f, p99 %.2f, max %.2f%n",
+                    Arrays.stream(all).average().getAsDouble() / 1e6, all[all.length / 2] / 1e6,
+                    all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+        }
+    }
+
+    /** Play a game with client, choosing random legal columns with random
+     *  after thinking thinkMs ms each, and return the latency in ns of every
+     *  engine reply. */
+    private static long[] playRandom(Client client, long thinkMs, SplittableRandom random)
+            throws IOException, InterruptedException {
+        Board b= new Board();
+        List<Long> latencies= new ArrayList<Long>();
+        long sent= 0;
+        int turn= client.awaitTurn();
+        while (turn != GAME_OVER) {
+            if (turn >= 0) {
+                b.makeMove(Board.Player.YELLOW, turn);
+                latencies.add(System.nanoTime() - sent);
+            }
+            if (thinkMs > 0) Thread.sleep(thinkMs);
+            int c;
+            do {
+                c= random.nextInt(Board.NUM_COLS);
+            } while (!b.canPlay(c));
+            b.makeMove(Board.Player.RED, c);
+            sent= System.nanoTime();
+            client.play(c);
+            turn= client.awaitTurn();
+        }
+        long[] result= new long[latencies.size()];
+        for (int i= 0; i < result.length; i++)
+            result[i]= latencies.get(i);
+        return result;
+    }
+}
@@ -0,0 +1,78 @@
+import java.util.Arrays;
+
+/** Reports how the parallel modes of MCTSSolver scale with the number of
+ *  threads: the number of playouts per second during a search of a fixed
+ *  time, for 1, 2, 4, 8 and 16 threads, on every position of
+ *  Positions.REFERENCE. Run it as
+ *      java MCTSScaling [ms [rounds]]
+ *  with the time of each search in milliseconds (default 1000) and the
+ *  number of rounds (default 3). Every configuration (parallelism, position
+ *  and thread count) is first searched once untimed, for at least
+ *  WARM_UP_MS ms, so that the JIT compiler has compiled its code paths
+ *  before it is measured, and then searched rounds times; the median rate
+ *  is reported, with the moves of that search. Each search uses a new
+ *  MCTSSolver. */
+public class MCTSScaling {
+
+    /** The result of one search: its playouts per second and the columns
+     *  of the Moves it preferred. */
+    private static class Run {
+        final double rate;
+        final String columns;
+
+        Run(double rate, String columns) {
+            this.rate= rate;
+            this.columns= columns;
+        }
+    }
+
+    /** The shortest warm-up search, in ms. */
+    private static final long WARM_UP_MS= 1000;
+
+    /** The thread counts that are measured. */
+    private static final int[] threadCounts= {1, 2, 4, 8, 16};
+
+    /** Print the scaling table for every Parallelism and position. */
+    public static void main(String[] args) {
+        long ms= args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        int rounds= args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.println(ms + " ms per search, median of " + rounds + " rounds, "
+                + Runtime.getRuntime().availableProcessors() + " processors available");
+        System.out.println("mode  position    threads  playouts/s  speed-up  moves");
+        for (MCTSSolver.Parallelism kind : MCTSSolver.Parallelism.values()) {
+            for (String moves : Positions.REFERENCE) {
+                Board b= Positions.play(moves);
+                Board.Player toPlay= Positions.toPlay(b);
+                double baseline= 0;
+                for (int n : threadCounts) {
+                    search(b, toPlay, Math.max(ms, WARM_UP_MS), kind, n);
+                    Run[] runs= new Run[rounds];
+                    for (int r= 0; r < rounds; r++)
+                        runs[r]= search(b, toPlay, ms, kind, n);
+                    Arrays.sort(runs, (x, y) -> Double.compare(x.rate, y.rate));
+                    Run median= runs[rounds / 2];
+                    if (n == 1) baseline= median.rate;
+                    System.out.printf("%-5s %-11s %7d %11.0f %9.2f  %s%n", kind,
+                            moves.isEmpty() ? "-" : moves, n, median.rate, median.rate / baseline,
+                            median.columns);
+                }
+            }
+        }
+    }
+
+    /** Search Board b for Player p for ms ms with a new MCTSSolver that uses
+     *  n threads as given by kind, and return the Run. */
+    private static Run search(Board b, Board.Player p, long ms, MCTSSolver.Parallelism kind, int n) {
+        MCTSSolver solver= new MCTSSolver(p, 1, n);
+        solver.setTimeLimit(ms);
+        solver.setParallelism(n, kind);
+        long start= System.nanoTime();
+        Move[] preferred= solver.getMoves(b);
+        long ns= Math.max(1, System.nanoTime() - start);
+        solver.setParallelism(1, kind);
+        StringBuilder columns= new StringBuilder();
+        for (Move m : preferred)
+            columns.append(m.getColumn());
+        return new Run(solver.getIterationCount() * 1e9 / ns, columns.toString());
+    }
+}
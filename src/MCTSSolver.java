@@ -0,0 +1,405 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/** An instance represents a Solver that uses Monte Carlo tree search with
+ *  the UCT rule. Each iteration walks down the search tree, choosing at
+ *  every node the child with the best upper confidence bound, adds one new
+ *  node, plays a random game from there (a playout) and adds its result to
+ *  every node on the way back up. The preferred Moves are those searched
+ *  most often.
+ *
+ *  A search is limited by a number of iterations or, with setTimeLimit, by
+ *  wall-clock time, and it can be stopped after any iteration, so it plays
+ *  reasonably at any time budget. A cap set by setBudget can cut either
+ *  kind of search short. Playouts are lightly guided: a player
+ *  takes an immediate win, otherwise blocks an immediate win of the
+ *  opponent, and otherwise plays a random column. They run on two longs in
+ *  the layout of Board.getPieces and allocate nothing.
+ *
+ *  With setParallelism, several threads share the iterations of a search
+ *  (see Parallelism).
+ *
+ *  Results are counted in half points: 2 for a win, 1 for a draw and 0 for a
+ *  loss. */
+public class MCTSSolver implements Solver, Budgeted {
+
+    /** The ways a search can use several threads. */
+    public enum Parallelism {
+        /** Tree parallelism: all threads walk down one shared tree. A thread
+         *  counts its visit of a node on the way down, before the result of
+         *  its playout is known, as a loss (a virtual loss), which steers the
+         *  other threads to other nodes until the result is added. */
+        TREE,
+        /** Root parallelism: every thread builds its own tree from the root,
+         *  and the visits of the moves of the root are summed over the trees. */
+        ROOT
+    }
+
+    /** The default weight of exploration in the UCT rule. */
+    public static final double DEFAULT_EXPLORATION= Math.sqrt(2);
+
+    /** Added to Node.stats for one visit. */
+    private static final long VISIT= 1L << 32;
+
+    /** A node of the search tree: a position reached by playing column from
+     *  its parent. Nodes are updated without locks, so that threads can share
+     *  a tree: the fields that never change are final, which makes a node
+     *  fully visible to every thread that finds it in a children array, and
+     *  the others start at 0 and change atomically. */
+    private static final class Node {
+        /** The column played into this node from its parent. */
+        final int column;
+        /** True iff the game is over in this node. */
+        final boolean terminal;
+        /** If terminal, the half points of the player who played into this
+         *  node: 2 if that move won, 1 if it filled the board. */
+        final int result;
+        /** Bit c is set iff column c can be played here. */
+        final int playable;
+        /** children[c] is the child reached by playing column c (null if it
+         *  has not been added yet, and always if terminal). */
+        final Node[] children;
+        /** Bit c is set iff a thread has started to add the child of column c. */
+        volatile int claimed;
+        /** The number of visits in the high 32 bits and, in the low 32 bits,
+         *  the half points won in those visits by the player who played into
+         *  this node. A visit in progress counts as a loss. */
+        volatile long stats;
+
+        /** Constructor: a node reached by playing column c into a position
+         *  in which the player to play then has pieces current and mask holds
+         *  all pieces. The game is over iff wins (that move won) or the
+         *  board is full. */
+        Node(int c, long current, long mask, boolean wins) {
+            column= c;
+            terminal= wins || mask == Board.FULL;
+            result= wins ? 2 : 1;
+            int p= 0;
+            long possible= Board.possible(mask);
+            for (int col= 0; col < Board.NUM_COLS; col++) {
+                if (!terminal && (possible & Board.columnMask(col)) != 0) p |= 1 << col;
+            }
+            playable= p;
+            children= terminal ? null : new Node[Board.NUM_COLS];
+        }
+
+        /** Return the number of visits of this node. */
+        int visits() {
+            return (int) (stats >>> 32);
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<Node> CLAIMED=
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "claimed");
+    private static final AtomicLongFieldUpdater<Node> STATS=
+            AtomicLongFieldUpdater.newUpdater(Node.class, "stats");
+
+    private Board.Player player;  // the player this Solver plays for
+    private long iterations;      // the iterations of a search without a time limit
+    private long timeLimit;       // the time budget of a search in ms (0 if none)
+    private long budgetMs;        // the cap on the time of a search in ms (0 if none)
+    private long budgetNodes;     // the cap on the iterations of a search (0 if none)
+    private double exploration= DEFAULT_EXPLORATION;
+    private SplittableRandom random;
+    private long lastIterations;  // the iterations of the last search
+
+    /** The threads that search (null if the search runs on the calling
+     *  thread only). */
+    private ForkJoinPool pool;
+
+    /** How the threads of pool are used. */
+    private Parallelism parallelism= Parallelism.TREE;
+
+    /** Constructor: an instance for player p that runs n iterations per
+     *  search, with a random seed.
+     *  Precondition: n >= 1. */
+    public MCTSSolver(Board.Player p, long n) {
+        this(p, n, new SplittableRandom().nextLong());
+    }
+
+    /** Constructor: an instance for player p that runs n iterations per
+     *  search and whose playouts are random with seed seed, so that on one
+     *  thread it always returns the same Moves for the same Boards.
+     *  Precondition: n >= 1. */
+    public MCTSSolver(Board.Player p, long n, long seed) {
+        player= p;
+        iterations= n;
+        random= new SplittableRandom(seed);
+    }
+
+    /** Give each getMoves call a budget of ms milliseconds instead of a
+     *  number of iterations (use the number of iterations if ms is 0). The
+     *  clock is checked every 256 iterations.
+     *  Precondition: ms >= 0. */
+    public void setTimeLimit(long ms) {
+        timeLimit= ms;
+    }
+
+    /** See Budgeted.setBudget for the specification. The positions are
+     *  iterations here. */
+    public @Override void setBudget(long ms, long n) {
+        budgetMs= ms;
+        budgetNodes= n;
+    }
+
+    /** Set the weight of exploration in the UCT rule to c: larger values
+     *  spread the iterations more evenly over the moves. The default is
+     *  DEFAULT_EXPLORATION.
+     *  Precondition: c >= 0. */
+    public void setExploration(double c) {
+        exploration= c;
+    }
+
+    /** Make the search use n threads of a ForkJoinPool in the way given by
+     *  kind (search on the calling thread only if n is 1). The threads share
+     *  the iterations of a search, and which thread runs which iteration
+     *  varies, so the preferred Moves may vary too.
+     *  Precondition: n >= 1. */
+    public void setParallelism(int n, Parallelism kind) {
+        if (pool != null) pool.shutdown();
+        parallelism= kind;
+        pool= n > 1 ? new ForkJoinPool(n) : null;
+    }
+
+    /** Return the number of iterations run by the last call of getMoves. */
+    public long getIterationCount() {
+        return lastIterations;
+    }
+
+    /** See Solver.getMoves for the specification. The preferred Moves are
+     *  those whose nodes were visited most often. */
+    public @Override Move[] getMoves(Board b) {
+        assert b != null;
+        lastIterations= 0;
+        if (b.hasConnectFour() != null || b.isFull()) return Move.length0;
+
+        long current= b.getPieces(player);
+        long mask= current | b.getPieces(player.opponent());
+        long ms= timeLimit;
+        if (budgetMs > 0 && (ms == 0 || budgetMs < ms)) ms= budgetMs;
+        long deadline= ms > 0 ? System.nanoTime() + ms * 1000000 : 0;
+        long total= timeLimit > 0 ? Long.MAX_VALUE : iterations;
+        if (budgetNodes > 0) total= Math.min(total, budgetNodes);
+        AtomicLong started= new AtomicLong();
+        int threads= pool == null ? 1 : pool.getParallelism();
+        Node shared= new Node(-1, current, mask, false);
+        List<Walker> walkers= new ArrayList<Walker>();
+        for (int i= 0; i < threads; i++) {
+            Node root= parallelism == Parallelism.TREE ? shared : new Node(-1, current, mask, false);
+            walkers.add(new Walker(root, current, mask, deadline, total, started, random.split(),
+                    root == shared && threads > 1));
+        }
+        if (pool == null) {
+            walkers.get(0).compute();
+        } else {
+            for (Walker w : walkers)
+                pool.execute(w);
+            for (Walker w : walkers)
+                w.join();
+        }
+
+        // Sum the visits of the moves of the root over the distinct roots
+        int[] visits= new int[Board.NUM_COLS];
+        int most= 0;
+        for (int i= 0; i < walkers.size(); i++) {
+            lastIterations += walkers.get(i).iterations;
+            if (i > 0 && parallelism == Parallelism.TREE) continue;
+            for (Node child : walkers.get(i).root.children) {
+                if (child != null) visits[child.column] += child.visits();
+            }
+        }
+        int count= 0;
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (visits[c] > most) {
+                most= visits[c];
+                count= 0;
+            }
+            if (visits[c] == most && most > 0) count++;
+        }
+        Move[] preferredMoves= new Move[count];
+        count= 0;
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (most > 0 && visits[c] == most)
+                preferredMoves[count++]= new Move(player, c);
+        }
+        return preferredMoves;
+    }
+
+    /** A thread's share of a search: it runs iterations from its root until
+     *  the search has started all its iterations or its deadline passes. */
+    private class Walker extends RecursiveAction {
+        private Node root;          // the root of the tree this walker searches
+        private long current;       // the pieces of the player to play at root
+        private long mask;          // all pieces at root
+        private long deadline;      // the System.nanoTime() to stop at (0 if none)
+        private long total;         // the iterations of the whole search
+        private AtomicLong started; // iterations started by all walkers of the search
+        private SplittableRandom random;
+        private long iterations;    // iterations run by this walker
+        private boolean shared;     // true iff other walkers search the same tree
+
+        /** The nodes on the path of the current iteration, root first. */
+        private Node[] path= new Node[Board.NUM_ROWS * Board.NUM_COLS + 1];
+
+        /** Constructor: a walker searching from node root, in which the
+         *  player to play has pieces current and mask holds all pieces, until
+         *  the System.nanoTime() deadline (0 if none) or until the walkers
+         *  sharing started have started total iterations, with random numbers
+         *  from random. shared is true iff other walkers search from root too. */
+        Walker(Node root, long current, long mask, long deadline, long total, AtomicLong started,
+                SplittableRandom random, boolean shared) {
+            this.root= root;
+            this.shared= shared;
+            this.current= current;
+            this.mask= mask;
+            this.deadline= deadline;
+            this.total= total;
+            this.started= started;
+            this.random= random;
+        }
+
+        /** Run iterations until the search is done. */
+        protected @Override void compute() {
+            // Take the iterations in batches, so that walkers rarely meet at
+            // started, and check the clock after each batch
+            long first;
+            while ((first= started.getAndAdd(256)) < total) {
+                long n= Math.min(256, total - first);
+                for (long i= 0; i < n; i++)
+                    iterate();
+                iterations += n;
+                if (deadline != 0 && System.nanoTime() - deadline >= 0) break;
+            }
+        }
+
+        /** Run one iteration from root.
+         *  Precondition: the game is not over in root. */
+        private void iterate() {
+            long current= this.current;
+            long mask= this.mask;
+
+            // Selection: go down through nodes that have all their children
+            Node node= root;
+            int length= 0;
+            path[length++]= node;
+            add(node, VISIT);
+            int column= -1;  // the column of the child to add (-1 if none)
+            while (!node.terminal) {
+                column= claim(node);
+                if (column >= 0) break;
+                Node child= select(node);
+                if (child == null) break;  // its children are still being added
+                node= child;
+                long tile= Board.possible(mask) & Board.columnMask(node.column);
+                current ^= mask;
+                mask |= tile;
+                path[length++]= node;
+                add(node, VISIT);
+            }
+
+            // Expansion: add one child, unless the game is over
+            int value;  // half points of the player who played into node
+            if (node.terminal) {
+                value= node.result;
+            } else {
+                if (column >= 0) {
+                    long tile= Board.possible(mask) & Board.columnMask(column);
+                    boolean wins= (Board.winningTiles(current, mask) & tile) != 0;
+                    current ^= mask;
+                    mask |= tile;
+                    Node child= new Node(column, current, mask, wins);
+                    add(child, VISIT);
+                    node.children[column]= child;
+                    node= child;
+                    path[length++]= node;
+                }
+
+                // Simulation
+                value= node.terminal ? node.result : 2 - playout(current, mask);
+            }
+
+            // Backpropagation: the players alternate on the way up
+            for (int i= length - 1; i >= 0; i--) {
+                add(path[i], value);
+                value= 2 - value;
+            }
+        }
+
+        /** Add x to the stats of node, atomically if other walkers share it. */
+        private void add(Node node, long x) {
+            if (shared) STATS.getAndAdd(node, x);
+            else node.stats += x;
+        }
+
+        /** Claim a random column of node that has no child and no thread
+         *  adding one, and return it (-1 if there is none). */
+        private int claim(Node node) {
+            while (true) {
+                int claimed= node.claimed;
+                int untried= node.playable & ~claimed;
+                if (untried == 0) return -1;
+                int c= randomBit(untried);
+                if (CLAIMED.compareAndSet(node, claimed, claimed | 1 << c)) return c;
+            }
+        }
+
+        /** Return the child of node with the largest upper confidence bound
+         *  (null if node has no child yet). Visits in progress count as
+         *  losses. */
+        private Node select(Node node) {
+            double logVisits= Math.log(node.visits());
+            Node best= null;
+            double bestBound= Double.NEGATIVE_INFINITY;
+            for (Node child : node.children) {
+                if (child == null) continue;
+                long stats= child.stats;
+                int visits= (int) (stats >>> 32);
+                double bound= (int) stats / (2.0 * visits)
+                        + exploration * Math.sqrt(logVisits / visits);
+                if (bound > bestBound) {
+                    bestBound= bound;
+                    best= child;
+                }
+            }
+            return best;
+        }
+
+        /** Return the result, in half points for the player to play, of a
+         *  random game from the position in which that player has pieces
+         *  current and mask holds all pieces.
+         *  Precondition: the game is not over in that position. */
+        private int playout(long current, long mask) {
+            int value= 2;  // the half points of a win for the player to play
+            while (mask != Board.FULL) {
+                long possible= Board.possible(mask);
+                if ((Board.winningTiles(current, mask) & possible) != 0) return value;
+                long forced= Board.winningTiles(current ^ mask, mask) & possible;
+                long tile;
+                if (forced != 0) {
+                    tile= Long.lowestOneBit(forced);
+                } else {
+                    tile= possible;
+                    for (int k= random.nextInt(Long.bitCount(possible)); k > 0; k--)
+                        tile &= tile - 1;
+                    tile= Long.lowestOneBit(tile);
+                }
+                current ^= mask;
+                mask |= tile;
+                value= 2 - value;
+            }
+            return 1;
+        }
+
+        /** Return the index of a random set bit of bits.
+         *  Precondition: bits != 0. */
+        private int randomBit(int bits) {
+            for (int k= random.nextInt(Integer.bitCount(bits)); k > 0; k--)
+                bits &= bits - 1;
+            return Integer.numberOfTrailingZeros(bits);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/** An instance is a Book that reads a file in the OpeningBook format in
+ *  place: the file is memory-mapped and its sorted keys are binary-searched
+ *  in the mapping, so nothing is parsed onto the heap. Opening a book takes
+ *  the same time whatever its size, and JVMs on one host that map the same
+ *  file share its pages in the page cache. Lookups may be made by several
+ *  threads at the same time. A file may hold at most MAX_RECORDS records. */
+public class MappedOpeningBook implements Book {
+    /** The largest number of records a mapped file can hold. */
+    public static final int MAX_RECORDS=
+            (Integer.MAX_VALUE - OpeningBook.HEADER_BYTES) / OpeningBook.RECORD_BYTES;
+
+    private MappedByteBuffer map;  // the whole book file
+    private int size;              // the number of records
+
+    /** Constructor: the book stored in file f.
+     *  Throw an IOException if f cannot be mapped or is not a book file. */
+    public MappedOpeningBook(File f) throws IOException {
+        try (FileChannel channel= FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < OpeningBook.HEADER_BYTES)
+                throw new IOException(f + " is not an opening book");
+            map= channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(channel.size(), Integer.MAX_VALUE));
+        }
+        size= OpeningBook.readHeader(map.getInt(0), map.getInt(4), map.getInt(8), f);
+        if (size > MAX_RECORDS || map.capacity() < OpeningBook.HEADER_BYTES
+                + (long) size * OpeningBook.RECORD_BYTES) {
+            throw new IOException(f + " is truncated or too large to map");
+        }
+    }
+
+    /** Return the number of positions in this book. */
+    public int size() {
+        return size;
+    }
+
+    /** See Book.bestColumn for the specification. */
+    public @Override int bestColumn(Board b, Board.Player toPlay) {
+        long key= OpeningBook.key(b, toPlay);
+        int lo= 0;
+        int hi= size - 1;
+        // inv: the key, if present, is in records lo..hi
+        while (lo <= hi) {
+            int mid= (lo + hi) >>> 1;
+            int at= OpeningBook.HEADER_BYTES + mid * OpeningBook.RECORD_BYTES;
+            long k= map.getLong(at);
+            if (k < key) lo= mid + 1;
+            else if (k > key) hi= mid - 1;
+            else return map.get(at + 8);
+        }
+        return -1;
+    }
+}
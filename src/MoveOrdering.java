@@ -0,0 +1,105 @@
+/** An instance orders the moves a search tries at each ply, so that the
+ *  moves most likely to cause a cutoff come first:
+ *  1. the killer moves of the ply, i.e. the last two moves that caused a
+ *     cutoff at that ply,
+ *  2. then the moves with the highest history score, i.e. how often and how
+ *     deep a player's move into that column caused a cutoff,
+ *  3. then the remaining moves in the given base order, which is normally
+ *     center-out.
+ *  The order in which Board.getPossibleMoves returns Moves is not affected.
+ *  An instance must not be used by several threads at the same time. */
+public class MoveOrdering {
+    /** The columns ordered from the center of the board outward. */
+    public static final int[] CENTER_OUT= centerOut();
+
+    /** Marks an empty killer slot. */
+    private static final int NONE= -1;
+
+    private int[][] killers;  // killers[ply] holds 2 columns (NONE if empty)
+    private int[][] history;  // history[p.ordinal()][c] is the score of p playing c
+    private int[][] orders;   // orders[ply] is the array returned by order at ply
+
+    /** Constructor: an instance for searches of at most maxPly plies. */
+    public MoveOrdering(int maxPly) {
+        killers= new int[maxPly + 1][2];
+        history= new int[Board.Player.values().length][Board.NUM_COLS];
+        orders= new int[maxPly + 1][Board.NUM_COLS];
+        clear();
+    }
+
+    /** Forget all killer moves and history scores. */
+    public void clear() {
+        for (int[] k : killers) {
+            k[0]= NONE;
+            k[1]= NONE;
+        }
+        for (int[] h : history) {
+            java.util.Arrays.fill(h, 0);
+        }
+    }
+
+    /** Return the columns of base in the order in which Player p should try
+     *  them at ply. The result is reused by the next call with the same ply,
+     *  so it must not be changed or kept. Precondition: base is a
+     *  permutation of the columns. */
+    public int[] order(int ply, Board.Player p, int[] base) {
+        int[] order= orders[ply];
+        int[] scores= history[p.ordinal()];
+        // Insertion sort by priority; it is stable, so ties keep the base order
+        for (int i= 0; i < base.length; i++) {
+            int c= base[i];
+            int j= i;
+            while (j > 0 && isBefore(ply, scores, c, order[j - 1])) {
+                order[j]= order[j - 1];
+                j--;
+            }
+            order[j]= c;
+        }
+        return order;
+    }
+
+    /** Record that Player p playing column caused a cutoff at ply with
+     *  depth plies left to search. */
+    public void cutoff(int ply, Board.Player p, int column, int depth) {
+        int[] k= killers[ply];
+        if (k[0] != column) {
+            k[1]= k[0];
+            k[0]= column;
+        }
+        history[p.ordinal()][column] += depth * depth;
+    }
+
+    /** Return the distance of column c from the center column. */
+    public static int centerDistance(int c) {
+        return Math.abs(2 * c - (Board.NUM_COLS - 1)) / 2;
+    }
+
+    /** Return true iff column c should be tried before column other at ply,
+     *  given the history scores. */
+    private boolean isBefore(int ply, int[] scores, int c, int other) {
+        int rank= killerRank(ply, c);
+        int otherRank= killerRank(ply, other);
+        if (rank != otherRank) return rank < otherRank;
+        return scores[c] > scores[other];
+    }
+
+    /** Return 0 if c is the first killer of ply, 1 if it is the second one,
+     *  and 2 otherwise. */
+    private int killerRank(int ply, int c) {
+        if (killers[ply][0] == c) return 0;
+        if (killers[ply][1] == c) return 1;
+        return 2;
+    }
+
+    /** Return the columns ordered from the center outward, left first. */
+    private static int[] centerOut() {
+        int[] order= new int[Board.NUM_COLS];
+        int n= 0;
+        for (int d= 0; n < order.length; d++) {
+            for (int c= 0; c < Board.NUM_COLS; c++) {
+                if (centerDistance(c) == d) order[n++]= c;
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.*;
+import java.util.*;
+
+/** An instance is a Book of positions from the first plies of a game. A book
+ *  is generated offline (see main), stored in a compact binary file and
+ *  loaded onto the heap once; a lookup is a binary search. To use a large
+ *  book file without loading it, see MappedOpeningBook.
+ *
+ *  File format (big-endian, as written by DataOutputStream):
+ *    int MAGIC, int VERSION, int n, then n records sorted by key, each a
+ *    long key (see key) followed by a byte column. */
+public class OpeningBook implements Book {
+    /** The first int of a book file. */
+    public static final int MAGIC= 0x43344246;  // "C4BF"
+
+    /** The version of the file format. */
+    public static final int VERSION= 1;
+
+    /** The number of bytes of the header of a book file. */
+    public static final int HEADER_BYTES= 12;
+
+    /** The number of bytes of one record of a book file. */
+    public static final int RECORD_BYTES= 9;
+
+    /** Set in a key when YELLOW is to play. */
+    private static final long YELLOW_TO_PLAY= Long.MIN_VALUE;
+
+    private long[] keys;     // the keys of the positions, in increasing order
+    private byte[] columns;  // columns[i] is the best column for keys[i]
+
+    /** Constructor: a book of the positions with keys k whose best column is
+     *  the corresponding element of c. Precondition: k is sorted and has no
+     *  duplicates, and c has the same length. */
+    private OpeningBook(long[] k, byte[] c) {
+        keys= k;
+        columns= c;
+    }
+
+    /** Return the book stored in file f.
+     *  Throw an IOException if f cannot be read or is not a book file. */
+    public static OpeningBook load(File f) throws IOException {
+        try (DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            int n= readHeader(in.readInt(), in.readInt(), in.readInt(), f);
+            long[] k= new long[n];
+            byte[] c= new byte[n];
+            for (int i= 0; i < n; i++) {
+                k[i]= in.readLong();
+                c[i]= in.readByte();
+            }
+            return new OpeningBook(k, c);
+        }
+    }
+
+    /** Return the number of records given in a header whose fields are magic,
+     *  version and n. Throw an IOException, naming file f, if the header is
+     *  not that of a book file. */
+    static int readHeader(int magic, int version, int n, File f) throws IOException {
+        if (magic != MAGIC || version != VERSION || n < 0)
+            throw new IOException(f + " is not an opening book of version " + VERSION);
+        return n;
+    }
+
+    /** Return the number of positions in this book. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** See Book.bestColumn for the specification. */
+    public @Override int bestColumn(Board b, Board.Player toPlay) {
+        int i= Arrays.binarySearch(keys, key(b, toPlay));
+        return i < 0 ? -1 : columns[i];
+    }
+
+    /** Return the key of Board b with Player toPlay to play. Different
+     *  positions have different keys: the low bits hold RED's pieces plus all
+     *  pieces (every column then ends in a unique pattern), and the top bit
+     *  tells who is to play. */
+    public static long key(Board b, Board.Player toPlay) {
+        long red= b.getPieces(Board.Player.RED);
+        long key= red + (red | b.getPieces(Board.Player.YELLOW));
+        return toPlay == Board.Player.YELLOW ? key | YELLOW_TO_PLAY : key;
+    }
+
+    /** Write to file f a book that maps each key in book, in increasing
+     *  order, to its column. Throw an IOException if f cannot be written. */
+    public static void write(SortedMap<Long, Integer> book, File f) throws IOException {
+        try (DataOutputStream out= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(book.size());
+            for (Map.Entry<Long, Integer> e : book.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeByte(e.getValue());
+            }
+        }
+    }
+
+    /** Generate a book and write it to a file. Arguments:
+     *    file   the book file to write
+     *    plies  the book holds every position with fewer than plies pieces
+     *           that can arise when either player moves first
+     *    depth  the depth d of the DEPTH_FIRST AI, with a 64 MB table, that
+     *           chooses the columns (default 12)
+     *  Positions that are already won or full are not in the book. A
+     *  PerfectSolver is not offered: every book holds the empty board, and
+     *  positions with fewer than 6 pieces take it minutes or more each (see
+     *  PerfectSolver.getMoves). */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java OpeningBook file plies [depth]");
+            return;
+        }
+        File f= new File(args[0]);
+        int plies= Integer.parseInt(args[1]);
+        int depth= args.length > 2 ? Integer.parseInt(args[2]) : 12;
+
+        // One engine per player, so that its table is reused from position to position
+        Solver[] engines= new Solver[Board.Player.values().length];
+        for (Board.Player p : Board.Player.values()) {
+            engines[p.ordinal()]= engineAI(p, depth);
+        }
+
+        SortedMap<Long, Integer> book= new TreeMap<Long, Integer>();
+        long start= System.nanoTime();
+        for (Board.Player first : Board.Player.values()) {
+            addPositions(new Board(), first, plies, engines, book);
+        }
+        write(book, f);
+        System.out.println("Wrote " + book.size() + " positions to " + f + " in "
+                + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /** Add to book every position that is not yet in it and can be reached
+     *  from Board b, with Player p to play, in fewer than plies moves,
+     *  together with the column that engines[p.ordinal()] prefers there. */
+    private static void addPositions(Board b, Board.Player p, int plies, Solver[] engines,
+            SortedMap<Long, Integer> book) {
+        if (plies <= 0 || b.hasConnectFour() != null || b.isFull()) return;
+        long key= key(b, p);
+        if (book.containsKey(key)) return;
+
+        book.put(key, engines[p.ordinal()].getMoves(b)[0].getColumn());
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (!b.canPlay(c)) continue;
+            b.makeMove(p, c);
+            addPositions(b, p.opponent(), plies - 1, engines, book);
+            b.undoMove(c);
+        }
+    }
+
+    /** Return a DEPTH_FIRST AI of depth depth for Player p, with a 64 MB table. */
+    private static AI engineAI(Board.Player p, int depth) {
+        AI ai= new AI(p, depth, AI.Search.DEPTH_FIRST);
+        ai.setTranspositionTable(new TranspositionTable(64, TranspositionTable.Replacement.ALWAYS));
+        return ai;
+    }
+}
@@ -0,0 +1,256 @@
+/** An instance represents a Solver that plays perfectly. It computes the
+ *  exact game-theoretic value of every move: whether it wins, loses or
+ *  draws, and how fast. It uses negamax with null-window searches, bitboards
+ *  and a transposition table. It works only on the standard 6x7 board.
+ *
+ *  Values are scores as seen by the player to play: 0 for a draw, and
+ *  otherwise positive iff the player to play wins. The magnitude is larger
+ *  the sooner the game is won: a win with the winner's k-th piece scores
+ *  (NUM_ROWS*NUM_COLS)/2 + 1 - k. See pliesToEnd. */
+public class PerfectSolver implements Solver {
+
+    /** The number of tiles of the board. */
+    private static final int SIZE= Board.NUM_ROWS * Board.NUM_COLS;
+
+    /** The default size of the transposition table in MB. */
+    public static final int DEFAULT_TABLE_MB= 64;
+
+    private Board.Player player;       // the player this Solver plays for
+    private TranspositionTable table;  // bounds on scores, keyed by position
+    private long nodes;                // positions searched by the last getMoves
+
+    /** Scratch space for sorting moves: sortedMoves[m] and sortedScores[m]
+     *  are used by negamax in positions with m pieces. Because of these, one
+     *  instance must not search in several threads at once. */
+    private long[][] sortedMoves= new long[SIZE][Board.NUM_COLS];
+    private int[][] sortedScores= new int[SIZE][Board.NUM_COLS];
+
+    /** Constructor: a perfect Solver for player p with a transposition table
+     *  of DEFAULT_TABLE_MB MB. */
+    public PerfectSolver(Board.Player p) {
+        this(p, DEFAULT_TABLE_MB);
+    }
+
+    /** Constructor: a perfect Solver for player p with a transposition table
+     *  of megabytes MB. The table is kept from move to move. */
+    public PerfectSolver(Board.Player p, int megabytes) {
+        assert Board.NUM_ROWS == 6 && Board.NUM_COLS == 7;
+        player= p;
+        table= new TranspositionTable(megabytes, TranspositionTable.Replacement.ALWAYS);
+    }
+
+    /** See Solver.getMoves for the specification. All Moves with the best
+     *  score are returned. If the player to play can win at once, those are
+     *  the winning moves. Otherwise the position is solved once, and each
+     *  move is kept iff a single null-window search shows that it reaches
+     *  that score, which is much cheaper than solving it when, as usual, it
+     *  is worse.
+     *
+     *  The time grows steeply with the number of empty tiles: positions with
+     *  8 or more pieces take well under a second, with 6 pieces a few
+     *  seconds, but with 4 or fewer minutes or more. For the first plies,
+     *  consult a Book (see OpeningBook) before calling this method. */
+    public @Override Move[] getMoves(Board b) {
+        nodes= 0;
+        if (b.hasConnectFour() != null) return Move.length0;
+
+        long current= b.getPieces(player);
+        long mask= current | b.getPieces(player.opponent());
+        int moves= Long.bitCount(mask);
+        long wins= Board.winningTiles(current, mask) & Board.possible(mask);
+        int best= wins != 0 ? 0 : solve(current, mask, moves);
+        boolean[] preferred= new boolean[Board.NUM_COLS];
+        int n= 0;
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (!b.canPlay(c)) continue;
+            long move= (mask + Board.bottomMask(c)) & Board.columnMask(c);
+            // No move scores more than best, so one that scores at least best is preferred
+            if (wins != 0 ? (wins & move) != 0 : isAtLeast(current, mask, moves, move, best)) {
+                preferred[c]= true;
+                n++;
+            }
+        }
+
+        Move[] preferredMoves= new Move[n];
+        n= 0;
+        for (int c= 0; c < Board.NUM_COLS; c++)
+            if (preferred[c])
+                preferredMoves[n++]= new Move(player, c);
+        return preferredMoves;
+    }
+
+    /** Return an array whose element c is the score, for this Solver's
+     *  player, of playing column c on Board b. Elements of columns that
+     *  cannot be played are undefined.
+     *  Precondition: b has no winner. */
+    public int[] scoreMoves(Board b) {
+        nodes= 0;
+        int[] scores= new int[Board.NUM_COLS];
+        if (b.hasConnectFour() != null) return scores;
+
+        long current= b.getPieces(player);
+        long mask= current | b.getPieces(player.opponent());
+        int moves= Long.bitCount(mask);
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (b.canPlay(c))
+                scores[c]= moveScore(current, mask, moves,
+                        (mask + Board.bottomMask(c)) & Board.columnMask(c));
+        }
+        return scores;
+    }
+
+    /** Return the score of Board b for this Solver's player, who is to play.
+     *  Precondition: b has no winner. */
+    public int solve(Board b) {
+        nodes= 0;
+        long current= b.getPieces(player);
+        long mask= current | b.getPieces(player.opponent());
+        return solve(current, mask, Long.bitCount(mask));
+    }
+
+    /** Return the number of positions searched by the last call of getMoves,
+     *  scoreMoves or solve. */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /** Return the number of moves, including the last one, until the game
+     *  ends with perfect play from a position with numMoves pieces whose
+     *  score is score. */
+    public static int pliesToEnd(int score, int numMoves) {
+        if (score == 0) return SIZE - numMoves;
+        // The winning move is made when n pieces are on the board, where
+        // (SIZE + 1 - n) / 2 is the score and n has the parity of the winner
+        int n= SIZE + 1 - 2 * Math.abs(score);
+        int winnerParity= score > 0 ? numMoves % 2 : (numMoves + 1) % 2;
+        if (n % 2 != winnerParity) n--;
+        return n - numMoves + 1;
+    }
+
+    /** Return the score of playing the tile move in the position given as in
+     *  solve. */
+    private int moveScore(long current, long mask, int moves, long move) {
+        if ((Board.winningTiles(current, mask) & move) != 0)
+            return (SIZE + 1 - moves) / 2;
+        // After the move, the opponent is to play
+        return -solve(current ^ mask, mask | move, moves + 1);
+    }
+
+    /** Return true iff the score of playing the tile move in the position
+     *  given as in solve is at least score. */
+    private boolean isAtLeast(long current, long mask, int moves, long move, int score) {
+        if ((Board.winningTiles(current, mask) & move) != 0)
+            return (SIZE + 1 - moves) / 2 >= score;
+        long opponent= current ^ mask;
+        long after= mask | move;
+        if ((Board.winningTiles(opponent, after) & Board.possible(after)) != 0)
+            return -(SIZE - moves) / 2 >= score;
+        // The move scores at least score iff the opponent's score is at most -score
+        return negamax(opponent, after, moves + 1, -score, -score + 1) <= -score;
+    }
+
+    /** Return the score of the position where the player to play has the
+     *  pieces in current, mask holds all pieces and moves pieces have been
+     *  played. The score is narrowed down by null-window searches. */
+    private int solve(long current, long mask, int moves) {
+        if ((Board.winningTiles(current, mask) & Board.possible(mask)) != 0)
+            return (SIZE + 1 - moves) / 2;
+
+        int min= -(SIZE - moves) / 2;
+        int max= (SIZE + 1 - moves) / 2;
+        while (min < max) {
+            int med= min + (max - min) / 2;
+            // Try small windows first: most positions are close to a draw
+            if (med <= 0 && min / 2 < med) med= min / 2;
+            else if (med >= 0 && max / 2 > med) med= max / 2;
+            int r= negamax(current, mask, moves, med, med + 1);
+            if (r <= med) max= r;
+            else min= r;
+        }
+        return min;
+    }
+
+    /** Return the score of the position given as in solve, if it is in
+     *  alpha..beta; otherwise return a bound beyond the window, as usual in
+     *  alpha-beta. Precondition: the player to play cannot win at once. */
+    private int negamax(long current, long mask, int moves, int alpha, int beta) {
+        nodes++;
+        long next= nonLosingMoves(current, mask);
+        if (next == 0) return -(SIZE - moves) / 2;  // the opponent wins next
+        if (moves >= SIZE - 2) return 0;            // neither can win any more
+
+        // The opponent cannot win with its next move
+        int min= -(SIZE - 2 - moves) / 2;
+        if (alpha < min) {
+            alpha= min;
+            if (alpha >= beta) return alpha;
+        }
+        // The player to play cannot win with this move
+        int max= (SIZE - 1 - moves) / 2;
+        if (beta > max) {
+            beta= max;
+            if (alpha >= beta) return beta;
+        }
+
+        long key= current + mask;
+        long entry= table.probe(key);
+        if (entry != TranspositionTable.MISS) {
+            int v= TranspositionTable.value(entry);
+            if (TranspositionTable.bound(entry) == TranspositionTable.Bound.LOWER) {
+                if (alpha < v) {
+                    alpha= v;
+                    if (alpha >= beta) return alpha;
+                }
+            } else if (beta > v) {
+                beta= v;
+                if (alpha >= beta) return beta;
+            }
+        }
+
+        // Try moves that create the most new threats first, center-out on ties
+        long[] sorted= sortedMoves[moves];
+        int[] sortScores= sortedScores[moves];
+        int n= 0;
+        for (int c : MoveOrdering.CENTER_OUT) {
+            long move= next & Board.columnMask(c);
+            if (move == 0) continue;
+            int score= Long.bitCount(Board.winningTiles(current | move, mask));
+            int i= n++;
+            while (i > 0 && sortScores[i - 1] < score) {
+                sorted[i]= sorted[i - 1];
+                sortScores[i]= sortScores[i - 1];
+                i--;
+            }
+            sorted[i]= move;
+            sortScores[i]= score;
+        }
+
+        for (int i= 0; i < n; i++) {
+            long move= sorted[i];
+            int score= -negamax(current ^ mask, mask | move, moves + 1, -beta, -alpha);
+            if (score >= beta) {
+                table.store(key, score, 0, TranspositionTable.Bound.LOWER);
+                return score;
+            }
+            if (score > alpha) alpha= score;
+        }
+        table.store(key, alpha, 0, TranspositionTable.Bound.UPPER);
+        return alpha;
+    }
+
+    /** Return the bitboard of the moves of the player to play that do not
+     *  let the opponent win at once (0 if there are none). The position is
+     *  given as in solve. */
+    private static long nonLosingMoves(long current, long mask) {
+        long possible= Board.possible(mask);
+        long opponentWins= Board.winningTiles(current ^ mask, mask);
+        long forced= possible & opponentWins;
+        if (forced != 0) {
+            // Two immediate threats cannot both be blocked
+            if ((forced & (forced - 1)) != 0) return 0;
+            possible= forced;
+        }
+        // Do not play right below a tile where the opponent would win
+        return possible & ~(opponentWins >> 1);
+    }
+}
@@ -0,0 +1,84 @@
+/** Counts the move sequences of a given length from a Board (perft, as in
+ *  chess programming): the number of leaves of the game tree to that depth,
+ *  found with Board.getPossibleMoves, makeMove and undoMove. A game that is
+ *  won before the depth is reached ends there and adds no leaf.
+ *
+ *  The counts are known for the empty Board and for a fixed corpus of
+ *  midgame positions, so Perft is a correctness oracle for the board
+ *  representation and the move generator: a faster replacement must give
+ *  the same counts. Run it as
+ *      java Perft [maxDepth]
+ *  to check every reference count (those of the empty Board up to maxDepth,
+ *  default 9), with exit status 1 if one is wrong, or as
+ *      java Perft moves depth
+ *  to print the counts from a position for depth 1 .. depth, where moves
+ *  are the columns played in turn from the empty Board, RED first ("-" for
+ *  the empty Board). Both report leaves per second. */
+public class Perft {
+
+    /** emptyCounts[d] is the perft count of the empty Board at depth d. */
+    private static final long[] emptyCounts= {1, 7, 49, 343, 2401, 16807, 117649,
+            823536, 5673234, 39394572, 268031646};
+
+    /** Midgame positions (the columns played in turn, RED first), each with
+     *  a depth and its perft count at that depth. */
+    private static final String[] corpusMoves= {"3332", "334251", "23344215", "3332244155",
+            "001122660", "0123456012345601", "3443554663", "333333444444",
+            "555220005264342605256234", "514451035314030116300525",
+            "63460301634130066403016344421215"};
+    private static final int[] corpusDepths= {7, 7, 7, 7, 7, 7, 8, 8, 8, 8, 10};
+    private static final long[] corpusCounts= {802065, 541631, 579725, 699325, 536696, 455487,
+            4482684, 213548, 63815, 625529, 187};
+
+    /** Return the number of move sequences of length depth from Board b
+     *  with Player p to play. b is unchanged when this method returns. */
+    public static long perft(Board b, Board.Player p, int depth) {
+        if (depth == 0) return 1;
+        Move[] moves= b.getPossibleMoves(p);
+        if (depth == 1) return moves.length;
+        long n= 0;
+        for (Move m : moves) {
+            b.makeMove(m);
+            n += perft(b, p.opponent(), depth - 1);
+            b.undoMove(m.getColumn());
+        }
+        return n;
+    }
+
+    /** Check the reference counts or count from a position, as given in the
+     *  class comment. */
+    public static void main(String[] args) {
+        if (args.length == 2) {
+            String moves= args[0].equals("-") ? "" : args[0];
+            for (int d= 1; d <= Integer.parseInt(args[1]); d++)
+                run(moves, d, -1);
+            return;
+        }
+        int maxDepth= args.length > 0 ? Integer.parseInt(args[0]) : 9;
+        if (maxDepth >= emptyCounts.length)
+            throw new IllegalArgumentException("Counts of the empty Board are known up to depth "
+                    + (emptyCounts.length - 1));
+        System.out.printf("%-34s %5s %12s %8s %12s%n", "position", "depth", "count", "ms", "leaves/s");
+        boolean ok= true;
+        for (int d= 0; d <= maxDepth; d++)
+            ok &= run("", d, emptyCounts[d]);
+        for (int i= 0; i < corpusMoves.length; i++)
+            ok &= run(corpusMoves[i], corpusDepths[i], corpusCounts[i]);
+        System.out.println(ok ? "All counts are correct." : "SOME COUNTS ARE WRONG.");
+        if (!ok) System.exit(1);
+    }
+
+    /** Count the move sequences of length depth from the position reached by
+     *  playing moves, print the result and return true iff it is expected
+     *  (any result is accepted if expected is -1). */
+    private static boolean run(String moves, int depth, long expected) {
+        Board b= Positions.play(moves);
+        long start= System.nanoTime();
+        long n= perft(b, Positions.toPlay(b), depth);
+        long ns= Math.max(1, System.nanoTime() - start);
+        boolean ok= expected == -1 || n == expected;
+        System.out.printf("%-34s %5d %12d %8d %12d%s%n", moves.isEmpty() ? "-" : moves, depth, n,
+                ns / 1000000, n * 1000000000L / ns, ok ? "" : "  WRONG, expected " + expected);
+        return ok;
+    }
+}
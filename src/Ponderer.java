@@ -0,0 +1,15 @@
+/** An instance is a Solver that can think while its opponent is to move
+ *  (ponder), so that its own next getMoves call has less work left to do. */
+public interface Ponderer {
+
+	/** Start thinking in the background about Board b, on which the
+	 *  opponent of this Ponderer is to move, and return at once. Thinking
+	 *  already in progress is stopped first. b is copied, so the caller may
+	 *  change it afterwards. Precondition: b is not null. */
+	public void startPondering(Board b);
+
+	/** Stop thinking in the background, and return when it has stopped. Do
+	 *  nothing if this Ponderer is not pondering. */
+	public void stopPondering();
+
+}
@@ -0,0 +1,60 @@
+import java.util.*;
+
+/** Builds the Boards that the harnesses play and search from. RED always
+ *  moves first on them, so the Player to play follows from the number of
+ *  pieces (see toPlay). */
+public class Positions {
+
+    /** The reference positions of the benchmark harnesses, given as the
+     *  columns played in turn from an empty Board, RED first (see play):
+     *  the empty Board, openings and a midgame position. */
+    public static final List<String> REFERENCE= List.of("", "3332", "334251", "23344215", "3332244155");
+
+    /** Return a new Board on which the columns in moves were played in turn,
+     *  RED first, e.g. "3332" for 3, 3, 3 and 2.
+     *  Precondition: moves consists of digits, and each column can be
+     *  played when its turn comes. */
+    public static Board play(String moves) {
+        Board b= new Board();
+        Board.Player p= Board.Player.RED;
+        for (char c : moves.toCharArray()) {
+            b.makeMove(p, c - '0');
+            p= p.opponent();
+        }
+        return b;
+    }
+
+    /** Return the Player to play on Board b, a position of a game that RED
+     *  started. */
+    public static Board.Player toPlay(Board b) {
+        return b.getNumEmpty() % 2 == 0 ? Board.Player.RED : Board.Player.YELLOW;
+    }
+
+    /** Return a new list with every Board that arises from the empty Board
+     *  after plies moves and has no winner, in increasing order of the
+     *  columns played. The Player to play on each is toPlay of it: RED if
+     *  plies is even, YELLOW if it is odd.
+     *  Precondition: plies >= 0. */
+    public static List<Board> openings(int plies) {
+        if (plies < 0) throw new IllegalArgumentException("Negative number of plies: " + plies);
+        List<Board> openings= new ArrayList<Board>();
+        addOpenings(new Board(), Board.Player.RED, plies, openings);
+        return openings;
+    }
+
+    /** Add to openings a copy of every Board that arises from Board b, with
+     *  Player p to play, after plies more moves and has no winner. */
+    private static void addOpenings(Board b, Board.Player p, int plies, List<Board> openings) {
+        if (b.hasConnectFour() != null) return;
+        if (plies == 0) {
+            openings.add(new Board(b));
+            return;
+        }
+        for (int c= 0; c < Board.NUM_COLS; c++) {
+            if (!b.canPlay(c)) continue;
+            b.makeMove(p, c);
+            addOpenings(b, p.opponent(), plies - 1, openings);
+            b.undoMove(c);
+        }
+    }
+}
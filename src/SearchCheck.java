@@ -0,0 +1,112 @@
+import java.util.*;
+import java.util.function.Supplier;
+
+/** Checks that every fast search of AI returns exactly the preferred Moves
+ *  of MINIMAX, as their specifications promise: ALPHA_BETA, and DEPTH_FIRST
+ *  with and without move ordering, with a transposition table, and split
+ *  over several threads at the root (ROOT_SPLIT), under both evaluations.
+ *  LAZY_SMP is not checked: its helpers fill the table with deeper results,
+ *  which may change the preferred Moves.
+ *
+ *  The positions are random games of up to 30 plies without a winner, from
+ *  a fixed seed, each searched to a random depth of 1 to 5. Run it as
+ *      java SearchCheck [positions [seed]]
+ *  (default 500 positions and seed 1). It prints every mismatch and the
+ *  number of positions checked, with exit status 1 if there was a
+ *  mismatch. */
+public class SearchCheck {
+
+    /** A search to check, with its name. */
+    private static class Config {
+        final String name;
+        final Supplier<AI> ai;  // creates the AI, given player and depth below
+
+        Config(String name, Supplier<AI> ai) {
+            this.name= name;
+            this.ai= ai;
+        }
+    }
+
+    /** The player and depth of the AIs that configs create. */
+    private static Board.Player player;
+    private static int depth;
+
+    /** Compare every search with MINIMAX, as given in the class comment. */
+    public static void main(String[] args) {
+        int n= args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        long seed= args.length > 1 ? Long.parseLong(args[1]) : 1;
+
+        List<Config> configs= new ArrayList<Config>();
+        configs.add(new Config("ALPHA_BETA", () -> new AI(player, depth, AI.Search.ALPHA_BETA)));
+        configs.add(new Config("DEPTH_FIRST", () -> new AI(player, depth, AI.Search.DEPTH_FIRST)));
+        configs.add(new Config("DEPTH_FIRST unordered", () -> {
+            AI ai= new AI(player, depth, AI.Search.DEPTH_FIRST);
+            ai.setMoveOrdering(false);
+            return ai;
+        }));
+        configs.add(new Config("DEPTH_FIRST table", () -> {
+            AI ai= new AI(player, depth, AI.Search.DEPTH_FIRST);
+            ai.setTranspositionTable(new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS));
+            return ai;
+        }));
+        for (int threads : new int[]{2, 4}) {
+            configs.add(new Config("ROOT_SPLIT " + threads, () -> {
+                AI ai= new AI(player, depth, AI.Search.DEPTH_FIRST);
+                ai.setParallelism(threads, AI.Parallelism.ROOT_SPLIT);
+                return ai;
+            }));
+        }
+        configs.add(new Config("ROOT_SPLIT 2 unordered", () -> {
+            AI ai= new AI(player, depth, AI.Search.DEPTH_FIRST);
+            ai.setMoveOrdering(false);
+            ai.setParallelism(2, AI.Parallelism.ROOT_SPLIT);
+            return ai;
+        }));
+
+        SplittableRandom random= new SplittableRandom(seed);
+        int mismatches= 0;
+        for (int i= 0; i < n; i++) {
+            Board b= randomPosition(random);
+            player= Positions.toPlay(b);
+            depth= 1 + random.nextInt(5);
+            for (AI.Evaluation e : AI.Evaluation.values()) {
+                AI minimax= new AI(player, depth, AI.Search.MINIMAX);
+                minimax.setEvaluation(e);
+                String expected= Arrays.toString(minimax.getMoves(new Board(b)));
+                for (Config config : configs) {
+                    AI ai= config.ai.get();
+                    ai.setEvaluation(e);
+                    String got= Arrays.toString(ai.getMoves(new Board(b)));
+                    ai.setParallelism(1);  // shut down the threads of ROOT_SPLIT
+                    if (!got.equals(expected)) {
+                        mismatches++;
+                        System.out.println("MISMATCH " + config.name + " " + e + ", depth " + depth
+                                + ":\n" + b + "MINIMAX " + expected + "\n" + config.name + " " + got);
+                    }
+                }
+            }
+        }
+        System.out.println(n + " positions, " + configs.size() + " searches, 2 evaluations: "
+                + (mismatches == 0 ? "all agree with MINIMAX." : mismatches + " MISMATCHES."));
+        if (mismatches > 0) System.exit(1);
+    }
+
+    /** Return the Board after a random game of 0 to 30 plies, RED first,
+     *  drawn from random, that has no winner. */
+    private static Board randomPosition(SplittableRandom random) {
+        while (true) {
+            Board b= new Board();
+            Board.Player p= Board.Player.RED;
+            int plies= random.nextInt(31);
+            for (int i= 0; i < plies && b.hasConnectFour() == null; i++) {
+                int c;
+                do {
+                    c= random.nextInt(Board.NUM_COLS);
+                } while (!b.canPlay(c));
+                b.makeMove(p, c);
+                p= p.opponent();
+            }
+            if (b.hasConnectFour() == null) return b;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+import java.util.Arrays;
+
+/** Reports how the parallel modes of the DEPTH_FIRST AI search scale with
+ *  the number of threads: the time to finish a search of a fixed depth and
+ *  the number of positions searched per second, for 1, 2, 4, 8 and 16
+ *  threads, on every position of Positions.REFERENCE. Run it as
+ *      java SearchScaling [depth [rounds]]
+ *  (default depth 12 and 3 rounds). Every configuration (parallelism,
+ *  position and thread count) is first searched once untimed, so that the
+ *  JIT compiler has compiled its code paths (the table, the ForkJoin tasks)
+ *  before it is timed, and then searched rounds times; the median time is
+ *  reported. Each search uses a new AI with an empty table. */
+public class SearchScaling {
+
+    /** The thread counts that are measured. */
+    private static final int[] threadCounts= {1, 2, 4, 8, 16};
+
+    /** The size in MB of the transposition table of each measured AI. */
+    private static final int TABLE_MB= 64;
+
+    /** Print the scaling table for every Parallelism and position. */
+    public static void main(String[] args) {
+        int depth= args.length > 0 ? Integer.parseInt(args[0]) : 12;
+        int rounds= args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        System.out.println("Depth " + depth + ", median of " + rounds + " rounds, "
+                + Runtime.getRuntime().availableProcessors() + " processors available");
+        System.out.println("mode        position    threads   ms  nodes/s  speed-up");
+        for (AI.Parallelism kind : AI.Parallelism.values()) {
+            for (String moves : Positions.REFERENCE) {
+                Board b= Positions.play(moves);
+                Board.Player toPlay= Positions.toPlay(b);
+                long baseline= 0;
+                for (int n : threadCounts) {
+                    search(b, toPlay, depth, kind, n);  // warm-up
+                    long[][] runs= new long[rounds][];
+                    for (int r= 0; r < rounds; r++)
+                        runs[r]= search(b, toPlay, depth, kind, n);
+                    Arrays.sort(runs, (x, y) -> Long.compare(x[0], y[0]));
+                    long ns= runs[rounds / 2][0];
+                    if (n == 1) baseline= ns;
+                    System.out.printf("%-11s %-11s %7d %5d %8d %9.2f%n", kind,
+                            moves.isEmpty() ? "-" : moves, n, ns / 1000000,
+                            runs[rounds / 2][1] * 1000000000L / ns, (double) baseline / ns);
+                }
+            }
+        }
+    }
+
+    /** Search Board b for Player p to depth d with a new AI with an empty
+     *  table, using n threads as given by kind, and return {the time in ns,
+     *  the positions searched}. */
+    private static long[] search(Board b, Board.Player p, int d, AI.Parallelism kind, int n) {
+        AI ai= new AI(p, d, AI.Search.DEPTH_FIRST);
+        ai.setTranspositionTable(new TranspositionTable(TABLE_MB, TranspositionTable.Replacement.ALWAYS));
+        ai.setParallelism(n, kind);
+        long start= System.nanoTime();
+        ai.getMoves(b);
+        long ns= Math.max(1, System.nanoTime() - start);
+        ai.setParallelism(1);
+        return new long[]{ns, ai.getNodeCount()};
+    }
+}
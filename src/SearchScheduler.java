@@ -0,0 +1,236 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Runs the getMoves calls of many Games on a fixed pool of worker threads.
+ *  Each call is a request of a client (typically one per Game, e.g. its
+ *  Session) with a priority and a budget of time and positions, and waits
+ *  in one queue until a worker is free. The queue is ordered by a Policy:
+ *      FAIR      the request of the client that has used the least search
+ *                time so far goes first, so a game that searches a lot
+ *                cannot starve the others
+ *      PRIORITY  the request with the highest priority goes first (equal
+ *                priorities in order of arrival); requests of low priority
+ *                wait as long as there are others
+ *  Under both policies, requests that are otherwise equal go in order of
+ *  arrival.
+ *
+ *  The budget of a request caps the search of a Budgeted Solver (see
+ *  Budgeted.setBudget): it is set just before the search and removed right
+ *  after it, so a request with no budget is never limited by an earlier
+ *  one, and the Solver's own settings are never changed. A budget of 0 puts
+ *  no cap on the time or the positions. Solvers that are not Budgeted are
+ *  not limited. A budget covers the search only, not the time spent in the
+ *  queue.
+ *
+ *  The scheduler keeps metrics of the queue: its depth now and at most, the
+ *  number of requests served, and their time waiting and searching. */
+public class SearchScheduler {
+
+    /** The order in which waiting requests are served. */
+    public enum Policy {
+        FAIR, PRIORITY
+    }
+
+    /** A getMoves call waiting for or running on a worker. */
+    private static class Request {
+        final Object client;
+        final Solver solver;
+        final Board board;
+        final int priority;
+        final long timeMs;       // the time budget (0 if none)
+        final long nodes;        // the node budget (0 if none)
+        final long usage;        // the client's search time in ns when submitted
+        final long sequence;     // the order of arrival
+        final long submitted;    // the System.nanoTime() of arrival
+        final CompletableFuture<Move[]> result= new CompletableFuture<Move[]>();
+
+        Request(Object client, Solver solver, Board board, int priority, long timeMs, long nodes,
+                long usage, long sequence) {
+            this.client= client;
+            this.solver= solver;
+            this.board= board;
+            this.priority= priority;
+            this.timeMs= timeMs;
+            this.nodes= nodes;
+            this.usage= usage;
+            this.sequence= sequence;
+            submitted= System.nanoTime();
+        }
+    }
+
+    private final Policy policy;
+    private final PriorityBlockingQueue<Request> queue;
+    private final Thread[] workers;
+    private final AtomicLong sequence= new AtomicLong();
+
+    /** The search time in ns used so far by each client. Clients are only
+     *  weakly referenced, so a finished game is forgotten. Guarded by
+     *  itself. */
+    private final Map<Object, Long> usage= new WeakHashMap<Object, Long>();
+
+    // The metrics, guarded by this
+    private int maxDepth;         // the largest queue depth seen
+    private long completed;       // the requests served
+    private long waitNanos;       // their total time in the queue
+    private long maxWaitNanos;    // their longest time in the queue
+    private long runNanos;        // their total time searching
+
+    /** Constructor: a scheduler with threads workers that serves requests in
+     *  the order of policy. The workers are daemon threads.
+     *  Precondition: threads >= 1. */
+    public SearchScheduler(int threads, Policy policy) {
+        if (threads < 1) throw new IllegalArgumentException("No worker threads: " + threads);
+        this.policy= policy;
+        Comparator<Request> order= policy == Policy.FAIR
+                ? Comparator.comparingLong((Request r) -> r.usage)
+                : Comparator.comparingInt((Request r) -> -r.priority);
+        queue= new PriorityBlockingQueue<Request>(64, order.thenComparingLong(r -> r.sequence));
+        workers= new Thread[threads];
+        for (int i= 0; i < threads; i++) {
+            workers[i]= new Thread(this::work, "SearchScheduler worker " + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /** Return the policy of this scheduler. */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /** Queue a getMoves call of Solver s on a copy of Board b for client,
+     *  with priority priority and budgets of timeMs ms and nodes positions
+     *  (0 if none), and return its future result. Cancelling
+     *  the future before a worker takes the request skips the search; a
+     *  search that has started runs to the end of its budget.
+     *  Precondition: timeMs >= 0 and nodes >= 0. */
+    public Future<Move[]> submit(Object client, Solver s, Board b, int priority, long timeMs, long nodes) {
+        if (timeMs < 0 || nodes < 0) throw new IllegalArgumentException("Negative budget");
+        Request r= new Request(client, s, new Board(b), priority, timeMs, nodes, getUsageNanos(client),
+                sequence.getAndIncrement());
+        queue.add(r);
+        int depth= queue.size();
+        synchronized (this) {
+            maxDepth= Math.max(maxDepth, depth);
+        }
+        return r.result;
+    }
+
+    /** Return a Solver whose getMoves calls are requests of client for Solver
+     *  s with priority priority and no budgets. The calls wait
+     *  for their result; they throw a CancellationException if the calling
+     *  thread is interrupted. */
+    public Solver schedule(Object client, Solver s, int priority) {
+        return schedule(client, s, priority, 0, 0);
+    }
+
+    /** Return a Solver as schedule(client, s, priority) does, but with
+     *  budgets of timeMs ms and nodes positions for every call.
+     *  Precondition: timeMs >= 0 and nodes >= 0. */
+    public Solver schedule(Object client, Solver s, int priority, long timeMs, long nodes) {
+        return b -> {
+            Future<Move[]> moves= submit(client, s, b, priority, timeMs, nodes);
+            try {
+                return moves.get();
+            } catch (InterruptedException e) {
+                moves.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Search request abandoned");
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        };
+    }
+
+    /** Take requests from the queue and serve them until interrupted. */
+    private void work() {
+        try {
+            while (true) {
+                Request r= queue.take();
+                if (r.result.isDone()) continue;  // cancelled while waiting
+                long start= System.nanoTime();
+                Move[] moves= null;
+                Throwable failure= null;
+                Budgeted budgeted= r.solver instanceof Budgeted ? (Budgeted) r.solver : null;
+                try {
+                    if (budgeted != null) budgeted.setBudget(r.timeMs, r.nodes);
+                    moves= r.solver.getMoves(r.board);
+                } catch (RuntimeException | Error e) {
+                    failure= e;
+                } finally {
+                    if (budgeted != null) budgeted.setBudget(0, 0);
+                }
+                long end= System.nanoTime();
+                // Record the metrics first, so that they include the request
+                // once its caller has the result
+                synchronized (usage) {
+                    usage.merge(r.client, end - start, Long::sum);
+                }
+                synchronized (this) {
+                    completed++;
+                    waitNanos += start - r.submitted;
+                    maxWaitNanos= Math.max(maxWaitNanos, start - r.submitted);
+                    runNanos += end - start;
+                }
+                if (failure == null) r.result.complete(moves);
+                else r.result.completeExceptionally(failure);
+            }
+        } catch (InterruptedException e) {
+            // Shut down
+        }
+    }
+
+    /** Return the search time in ns used so far by client. */
+    public long getUsageNanos(Object client) {
+        synchronized (usage) {
+            return usage.getOrDefault(client, 0L);
+        }
+    }
+
+    /** Return the number of requests waiting for a worker. */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Return the largest number of requests that waited at once. */
+    public synchronized int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    /** Return the number of requests served. */
+    public synchronized long getCompletedCount() {
+        return completed;
+    }
+
+    /** Return the mean time in ms that the served requests waited. */
+    public synchronized double getMeanWaitMillis() {
+        return completed == 0 ? 0 : waitNanos / 1e6 / completed;
+    }
+
+    /** Return the longest time in ms that a served request waited. */
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1e6;
+    }
+
+    /** Return the mean time in ms that the served requests searched. */
+    public synchronized double getMeanRunMillis() {
+        return completed == 0 ? 0 : runNanos / 1e6 / completed;
+    }
+
+    /** Return a one-line summary of the metrics. */
+    public @Override synchronized String toString() {
+        return String.format("%s scheduler, %d workers: %d requests, queue depth %d (max %d), "
+                + "wait ms mean %.2f max %.2f, search ms mean %.2f", policy, workers.length, completed,
+                queue.size(), maxDepth, getMeanWaitMillis(), getMaxWaitMillis(), getMeanRunMillis());
+    }
+
+    /** Stop the workers and cancel the requests that are waiting. Searches
+     *  that have started run to their end. */
+    public void shutdown() {
+        for (Thread w : workers)
+            w.interrupt();
+        for (Request r= queue.poll(); r != null; r= queue.poll())
+            r.result.cancel(false);
+    }
+}
@@ -0,0 +1,61 @@
+/** An instance is a Solver that passes every getMoves call on to another
+ *  Solver and measures it: the number of calls, the time they took and, for
+ *  Solvers that count them, the positions they searched. It is safe to read
+ *  the totals from another thread while the Solver is in use. */
+public class TimedSolver implements Solver {
+
+    private final Solver solver;  // the Solver that is measured
+    private long moves;           // the number of getMoves calls
+    private long nanos;           // the total time of those calls in ns
+    private long nodes;           // the total positions searched in those calls
+
+    /** Constructor: a Solver that measures Solver s. */
+    public TimedSolver(Solver s) {
+        solver= s;
+    }
+
+    /** Return the Solver that this one measures. */
+    public Solver getSolver() {
+        return solver;
+    }
+
+    /** See Solver.getMoves for the specification. */
+    public @Override Move[] getMoves(Board b) {
+        long start= System.nanoTime();
+        Move[] result= solver.getMoves(b);
+        long ns= System.nanoTime() - start;
+        long n= nodeCount(solver);
+        synchronized (this) {
+            moves++;
+            nanos += ns;
+            nodes += n;
+        }
+        return result;
+    }
+
+    /** Return the number of getMoves calls so far. */
+    public synchronized long getMoveCount() {
+        return moves;
+    }
+
+    /** Return the total time of the getMoves calls so far in ns. */
+    public synchronized long getNanos() {
+        return nanos;
+    }
+
+    /** Return the total number of positions searched by the getMoves calls
+     *  so far (0 for Solvers that do not count them). */
+    public synchronized long getNodeCount() {
+        return nodes;
+    }
+
+    /** Return the number of positions searched by the last getMoves call of
+     *  Solver s: the nodes of an AI or PerfectSolver, or the iterations of an
+     *  MCTSSolver (0 for other Solvers). */
+    public static long nodeCount(Solver s) {
+        if (s instanceof AI) return ((AI) s).getNodeCount();
+        if (s instanceof PerfectSolver) return ((PerfectSolver) s).getNodeCount();
+        if (s instanceof MCTSSolver) return ((MCTSSolver) s).getIterationCount();
+        return 0;
+    }
+}
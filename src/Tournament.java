@@ -0,0 +1,214 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/** Plays a headless round-robin tournament between Solvers, with many games
+ *  running in parallel on a thread pool and no console or GUI output per
+ *  game. Every pair of engines plays a number of games, half with each
+ *  color, each from the next of the openings of a few plies, so that
+ *  deterministic engines do not play the same game over and over. Run it as
+ *      java Tournament [-games n] [-threads n] [-plies n] engine engine ...
+ *  where -games is the number of games per pair (default 100), -threads the
+ *  size of the pool (default: one per processor), -plies the length of the
+ *  openings (default 2), and each engine is one of
+ *      dummy                           random moves (Dummy)
+ *      ai:depth[:search[:evaluation]]  an AI, e.g. ai:8:depth_first:threats
+ *                                      (search MINIMAX and evaluation WINDOWS
+ *                                      by default)
+ *      aitime:ms                       a DEPTH_FIRST AI with a time budget
+ *      mcts:iterations                 an MCTSSolver
+ *      perfect[:megabytes]             a PerfectSolver, which needs
+ *                                      openings of at least
+ *                                      MIN_PERFECT_PLIES plies
+ *  Engines are created anew for every game, so engines with a table start
+ *  each game with an empty one. At the end it prints the wins, draws and
+ *  losses of every pair and engine, and per engine the average time per
+ *  move and the positions searched per second. */
+public class Tournament {
+
+    /** The shortest openings from which a PerfectSolver plays: on
+     *  positions with fewer pieces, a move takes it minutes or more (see
+     *  PerfectSolver.getMoves). */
+    private static final int MIN_PERFECT_PLIES= 6;
+
+    /** The result of one game, as seen by the engines that played it. */
+    private static class Result {
+        int red;                 // the index of the engine that played RED
+        int yellow;              // the index of the engine that played YELLOW
+        Board.Player winner;     // null for a draw
+        TimedSolver redSolver;   // the RED engine, with its measurements
+        TimedSolver yellowSolver;
+    }
+
+    /** Run the tournament given by args, as in the class comment. */
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int games= 100;
+        int threads= Runtime.getRuntime().availableProcessors();
+        int plies= 2;
+        List<String> engines= new ArrayList<String>();
+        for (int i= 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-games": games= Integer.parseInt(args[++i]); break;
+                case "-threads": threads= Integer.parseInt(args[++i]); break;
+                case "-plies": plies= Integer.parseInt(args[++i]); break;
+                default: engines.add(args[i]);
+            }
+        }
+        if (engines.size() < 2) {
+            System.err.println("Usage: java Tournament [-games n] [-threads n] [-plies n] engine engine ...");
+            return;
+        }
+        for (String engine : engines) {
+            createSolver(engine, Board.Player.RED);  // reject bad specifications early
+            if (engine.split(":")[0].equals("perfect") && plies < MIN_PERFECT_PLIES) {
+                throw new IllegalArgumentException("Engine " + engine + " needs openings of at least "
+                        + MIN_PERFECT_PLIES + " plies (-plies " + plies + " given)");
+            }
+        }
+
+        List<Board> openings= Positions.openings(plies);
+
+        long start= System.nanoTime();
+        List<Result> results= play(engines, games, threads, openings);
+        long ms= (System.nanoTime() - start) / 1000000;
+        System.out.println(results.size() + " games on " + threads + " threads in " + ms + " ms");
+        report(engines, results);
+    }
+
+    /** Play games games between every pair of engines, on threads threads,
+     *  cycling through openings, and return the results.
+     *  Precondition: every Board in openings is a position of a game that
+     *  RED started (see Positions.toPlay). */
+    private static List<Result> play(List<String> engines, int games, int threads,
+            List<Board> openings) throws InterruptedException, ExecutionException {
+        ExecutorService pool= Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Result>> futures= new ArrayList<Future<Result>>();
+            int next= 0;
+            for (int i= 0; i < engines.size(); i++) {
+                for (int j= i + 1; j < engines.size(); j++) {
+                    for (int g= 0; g < games; g++) {
+                        // Each opening is played twice, once with each color
+                        Board opening= openings.get(next++ / 2 % openings.size());
+                        int red= g % 2 == 0 ? i : j;
+                        int yellow= g % 2 == 0 ? j : i;
+                        futures.add(pool.submit(() -> playGame(engines, red, yellow, opening)));
+                    }
+                }
+            }
+            List<Result> results= new ArrayList<Result>();
+            for (Future<Result> f : futures)
+                results.add(f.get());
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Play one game from Board opening between engines red and yellow (both
+     *  indexes into engines), starting with the Player to play on opening,
+     *  and return its result. */
+    private static Result playGame(List<String> engines, int red, int yellow, Board opening) {
+        Result r= new Result();
+        r.red= red;
+        r.yellow= yellow;
+        r.redSolver= new TimedSolver(createSolver(engines.get(red), Board.Player.RED));
+        r.yellowSolver= new TimedSolver(createSolver(engines.get(yellow), Board.Player.YELLOW));
+        Game game= new Game(r.redSolver, r.yellowSolver, new Board(opening),
+                Positions.toPlay(opening) == Board.Player.RED);
+        game.setVerbose(false);
+        game.runGame();
+        r.winner= game.getWinner();
+        return r;
+    }
+
+    /** Return a new Solver for Player p described by engine, in the format of
+     *  the class comment.
+     *  Throw an IllegalArgumentException if engine is not such a description. */
+    public static Solver createSolver(String engine, Board.Player p) {
+        String[] f= engine.split(":");
+        try {
+            switch (f[0]) {
+                case "dummy":
+                    if (f.length == 1) return new Dummy(p);
+                    break;
+                case "ai":
+                    if (f.length < 2 || f.length > 4) break;
+                    AI.Search search= f.length > 2 ? AI.Search.valueOf(f[2].toUpperCase()) : AI.Search.MINIMAX;
+                    AI ai= new AI(p, Integer.parseInt(f[1]), search);
+                    if (f.length > 3) ai.setEvaluation(AI.Evaluation.valueOf(f[3].toUpperCase()));
+                    return ai;
+                case "aitime":
+                    if (f.length != 2) break;
+                    AI timed= new AI(p, 1, AI.Search.DEPTH_FIRST);
+                    timed.setTimeLimit(Long.parseLong(f[1]));
+                    return timed;
+                case "mcts":
+                    if (f.length == 2) return new MCTSSolver(p, Long.parseLong(f[1]));
+                    break;
+                case "perfect":
+                    if (f.length == 1) return new PerfectSolver(p);
+                    if (f.length == 2) return new PerfectSolver(p, Integer.parseInt(f[1]));
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            // A number or name that cannot be parsed; reported below
+        }
+        throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    /** Print the tables of the tournament between engines with results. */
+    private static void report(List<String> engines, List<Result> results) {
+        int n= engines.size();
+        int[][] wins= new int[n][n];   // wins[i][j]: games engine i won against j
+        int[][] draws= new int[n][n];
+        long[] moves= new long[n];
+        long[] nanos= new long[n];
+        long[] nodes= new long[n];
+        for (Result r : results) {
+            if (r.winner == null) {
+                draws[r.red][r.yellow]++;
+                draws[r.yellow][r.red]++;
+            } else if (r.winner == Board.Player.RED) {
+                wins[r.red][r.yellow]++;
+            } else {
+                wins[r.yellow][r.red]++;
+            }
+            int[] players= {r.red, r.yellow};
+            TimedSolver[] solvers= {r.redSolver, r.yellowSolver};
+            for (int k= 0; k < 2; k++) {
+                moves[players[k]] += solvers[k].getMoveCount();
+                nanos[players[k]] += solvers[k].getNanos();
+                nodes[players[k]] += solvers[k].getNodeCount();
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-24s %-24s %6s %6s %6s%n", "engine", "opponent", "wins", "draws", "losses");
+        for (int i= 0; i < n; i++) {
+            for (int j= 0; j < n; j++) {
+                if (i == j) continue;
+                System.out.printf("%-24s %-24s %6d %6d %6d%n", engines.get(i), engines.get(j),
+                        wins[i][j], draws[i][j], wins[j][i]);
+            }
+        }
+
+        System.out.println();
+        System.out.printf("%-24s %6s %6s %6s %7s %12s %12s%n", "engine", "wins", "draws", "losses",
+                "score", "ms/move", "nodes/s");
+        for (int i= 0; i < n; i++) {
+            int w= 0;
+            int d= 0;
+            int l= 0;
+            for (int j= 0; j < n; j++) {
+                w += wins[i][j];
+                d += draws[i][j];
+                l += wins[j][i];
+            }
+            int games= Math.max(1, w + d + l);
+            System.out.printf("%-24s %6d %6d %6d %6.1f%% %12.3f %12s%n", engines.get(i), w, d, l,
+                    100.0 * (w + d / 2.0) / games,
+                    moves[i] == 0 ? 0 : nanos[i] / 1e6 / moves[i],
+                    nodes[i] == 0 ? "-" : String.valueOf(nodes[i] * 1000000000L / Math.max(1, nanos[i])));
+        }
+    }
+}
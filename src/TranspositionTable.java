@@ -0,0 +1,122 @@
+/** An instance is a fixed-size table of search results keyed by the 64-bit
+ *  hash of a position (see Board.getHash). Each entry holds a value, the
+ *  depth it was searched to and whether the value is exact or a bound.
+ *  When two positions map to the same slot, the Replacement policy decides
+ *  which one is kept.
+ *  A table can be shared by threads without locking: each slot stores its
+ *  key xor-ed with its entry, so an entry torn by two threads writing the
+ *  slot at once fails the key check and reads as MISS. */
+public class TranspositionTable {
+
+    /** The kinds of value an entry can hold. */
+    public enum Bound {
+        /** The value is the exact minimax value. */
+        EXACT,
+        /** The minimax value is at least the value. */
+        LOWER,
+        /** The minimax value is at most the value. */
+        UPPER
+    }
+
+    /** Policies deciding whether a new result replaces the one in its slot. */
+    public enum Replacement {
+        /** Always keep the newest result. */
+        ALWAYS,
+        /** Keep the old result if it was searched deeper than the new one. */
+        DEPTH_PREFERRED
+    }
+
+    /** The number of bytes used by one entry. */
+    public static final int ENTRY_BYTES= 16;
+
+    /** The largest depth an entry can hold (it has 8 bits for the depth). */
+    public static final int MAX_DEPTH= 255;
+
+    /** An entry returned by probe when the position is not in the table. */
+    public static final long MISS= 0;
+
+    /** All Bounds, indexed by ordinal. */
+    private static final Bound[] bounds= Bound.values();
+
+    private Replacement replacement; // the replacement policy
+    private long[] keys;  // keys[i] is the hash of the position in slot i xor data[i]
+    private long[] data;  // data[i] is the packed entry in slot i (MISS if empty)
+
+    /** Constructor: an empty table using at most megabytes MB of memory, with
+     *  replacement policy r. The number of slots is a power of 2.
+     *  Precondition: megabytes > 0. */
+    public TranspositionTable(int megabytes, Replacement r) {
+        long slots= Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        if (megabytes <= 0 || slots > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot create a table of " + megabytes + " MB");
+        }
+        replacement= r;
+        keys= new long[(int) slots];
+        data= new long[(int) slots];
+    }
+
+    /** Return the number of slots in this table. */
+    public int size() {
+        return keys.length;
+    }
+
+    /** Remove all entries from this table. */
+    public void clear() {
+        java.util.Arrays.fill(keys, 0);
+        java.util.Arrays.fill(data, MISS);
+    }
+
+    /** Return the entry for the position with hash h, or MISS if there is
+     *  none. Use value, depth and bound to read the entry. */
+    public long probe(long h) {
+        int i= slot(h);
+        long e= data[i];
+        return (keys[i] ^ e) == h ? e : MISS;
+    }
+
+    /** Store value v, searched to depth d with bound b, for the position with
+     *  hash h, unless the replacement policy keeps the entry already there.
+     *  An entry holds depths up to MAX_DEPTH; a deeper d is stored as
+     *  MAX_DEPTH, which is safe since a shallower entry is only used by
+     *  searches that are no deeper.
+     *  Precondition: d >= 0. */
+    public void store(long h, int v, int d, Bound b) {
+        d= Math.min(d, MAX_DEPTH);
+        int i= slot(h);
+        long old= data[i];
+        if (replacement == Replacement.DEPTH_PREFERRED && old != MISS
+                && (keys[i] ^ old) != h && depth(old) > d) {
+            return;
+        }
+        long e= pack(v, d, b);
+        keys[i]= h ^ e;
+        data[i]= e;
+    }
+
+    /** Return the value of entry e. Precondition: e is not MISS. */
+    public static int value(long e) {
+        return (int) e;
+    }
+
+    /** Return the depth of entry e. Precondition: e is not MISS. */
+    public static int depth(long e) {
+        return (int) (e >>> 32) & 0xFF;
+    }
+
+    /** Return the bound of entry e. Precondition: e is not MISS. */
+    public static Bound bound(long e) {
+        return bounds[(int) (e >>> 40) & 0x3];
+    }
+
+    /** Return an entry holding value v, depth d and bound b. The top bit
+     *  is set so that no entry equals MISS.
+     *  Precondition: 0 <= d <= MAX_DEPTH. */
+    private static long pack(int v, int d, Bound b) {
+        return (v & 0xFFFFFFFFL) | ((long) (d & 0xFF) << 32) | ((long) b.ordinal() << 40) | Long.MIN_VALUE;
+    }
+
+    /** Return the slot for hash h. */
+    private int slot(long h) {
+        return (int) (h ^ (h >>> 32)) & (keys.length - 1);
+    }
+}
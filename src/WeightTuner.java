@@ -0,0 +1,76 @@
+import java.io.*;
+import java.util.*;
+
+/** Compares sets of evaluation weights (see EvalWeights) by self-play. Each
+ *  candidate plays a batch of Games against the baseline: one game from
+ *  every opening of a few plies, once with each color, both sides using a
+ *  DEPTH_FIRST AI of the same depth. Run it as
+ *      java WeightTuner [-threats] depth plies baseline candidate ...
+ *  where baseline and each candidate are weights files, or "default" for
+ *  EvalWeights.DEFAULT, plies is the length of the openings (7^plies of
+ *  them, 2 * 7^plies games), and -threats makes both sides use the THREATS
+ *  evaluation. For each candidate it prints its wins, losses and draws and
+ *  its score, counting a draw as half a win. */
+public class WeightTuner {
+
+    /** Print the result of every candidate against the baseline. */
+    public static void main(String[] args) throws IOException {
+        int i= 0;
+        AI.Evaluation evaluation= AI.Evaluation.WINDOWS;
+        if (args.length > 0 && args[0].equals("-threats")) {
+            evaluation= AI.Evaluation.THREATS;
+            i++;
+        }
+        if (args.length - i < 4) {
+            System.err.println("Usage: java WeightTuner [-threats] depth plies baseline candidate ...");
+            return;
+        }
+        int depth= Integer.parseInt(args[i++]);
+        int plies= Integer.parseInt(args[i++]);
+        EvalWeights baseline= weights(args[i++]);
+        List<Board> openings= Positions.openings(plies);
+
+        System.out.println("candidate             wins losses draws  score");
+        for (; i < args.length; i++) {
+            EvalWeights candidate= weights(args[i]);
+            int[] results= compare(candidate, baseline, evaluation, depth, openings);
+            int games= results[0] + results[1] + results[2];
+            System.out.printf("%-20s %5d %6d %5d %5.1f%%%n", args[i], results[0], results[1],
+                    results[2], 100.0 * (results[0] + results[2] / 2.0) / games);
+        }
+    }
+
+    /** Return the weights named by name: those in file name, or
+     *  EvalWeights.DEFAULT if name is "default". */
+    private static EvalWeights weights(String name) throws IOException {
+        return name.equals("default") ? EvalWeights.DEFAULT : EvalWeights.load(new File(name));
+    }
+
+    /** Play a Game from every Board in openings twice, with candidate playing
+     *  each color once against baseline. Both AIs use evaluation e and search
+     *  to depth d. Return {candidate wins, candidate losses, draws}.
+     *  Precondition: every Board in openings is a position of a game that
+     *  RED started; each Game starts with the Player to play on it (see
+     *  Positions.toPlay). */
+    public static int[] compare(EvalWeights candidate, EvalWeights baseline, AI.Evaluation e,
+            int d, List<Board> openings) {
+        int[] results= new int[3];
+        for (Board opening : openings) {
+            for (Board.Player side : Board.Player.values()) {
+                AI red= new AI(Board.Player.RED, d, AI.Search.DEPTH_FIRST,
+                        side == Board.Player.RED ? candidate : baseline);
+                AI yellow= new AI(Board.Player.YELLOW, d, AI.Search.DEPTH_FIRST,
+                        side == Board.Player.YELLOW ? candidate : baseline);
+                red.setEvaluation(e);
+                yellow.setEvaluation(e);
+                Game game= new Game(red, yellow, new Board(opening),
+                        Positions.toPlay(opening) == Board.Player.RED);
+                game.setVerbose(false);
+                game.runGame();
+                Board.Player winner= game.getWinner();
+                results[winner == null ? 2 : winner == side ? 0 : 1]++;
+            }
+        }
+        return results;
+    }
+}